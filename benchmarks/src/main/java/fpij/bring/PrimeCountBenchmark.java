@@ -0,0 +1,85 @@
+package fpij.bring;
+
+import fpij.lazy.PrimeSieve;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+// The prime counts from Performance.main, measured by JMH instead of timeIt:
+// warmed up, forked, and with the count returned so it cannot be optimized away.
+//   mvn -B package && java -jar target/benchmarks.jar PrimeCountBenchmark -prof gc
+// or run main below, which adds the GC profiler for the allocation rate.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class PrimeCountBenchmark {
+
+    @Param({"100000"})
+    public int limit;
+
+    private List<Long> numbers;
+
+    @Setup
+    public void setUp() {
+        numbers = Stream.iterate(1L, number -> number + 1)
+                .limit(limit).collect(Collectors.<Long>toList());
+    }
+
+    @Benchmark
+    public long habitual() {
+        long primesCount = 0;
+        for (long number : numbers) {
+            if (Performance.isPrime(number)) {
+                primesCount += 1;
+            }
+        }
+        return primesCount;
+    }
+
+    @Benchmark
+    public long lambda() {
+        return numbers.stream()
+                .filter(number -> Performance.isPrime(number))
+                .count();
+    }
+
+    @Benchmark
+    public long parallel() {
+        return numbers.parallelStream()
+                .filter(number -> Performance.isPrime(number))
+                .count();
+    }
+
+    @Benchmark
+    public long sieve() {
+        return PrimeSieve.countPrimes(1, limit + 1);
+    }
+
+    public static void main(final String[] args) throws RunnerException {
+        final Options options = new OptionsBuilder()
+                .include(PrimeCountBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
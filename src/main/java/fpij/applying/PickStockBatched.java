@@ -0,0 +1,14 @@
+package fpij.applying;
+
+public class PickStockBatched {
+
+    // all the prices are fetched in one batch, then filtered and reduced as before
+    public static void main(String[] args) {
+        final StockInfo highPriced = StockUtil.getPrices(Tickers.symbols).stream()
+                .filter(StockUtil.isPriceLessThan(500))
+                .reduce(StockUtil::pickHigh)
+                .get();
+
+        System.out.println("High priced under $500 is " + highPriced);
+    }
+}
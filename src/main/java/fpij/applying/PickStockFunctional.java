@@ -9,6 +9,7 @@
 package fpij.applying;
 
 import java.util.stream.Stream;
+import static fpij.applying.TopK.topK;
 
 public class PickStockFunctional {
 
@@ -21,7 +22,15 @@ public class PickStockFunctional {
         System.out.println("High priced under $500 is " + highPriced);
     }
 
+    // like findHighPriced, but keeps the n highest instead of one
+    public static void findTopPriced(final Stream<String> symbols, final int n) {
+        System.out.println(n + " highest priced under $500 are " + symbols.map(StockUtil::getPrice)
+                .filter(StockUtil.isPriceLessThan(500))
+                .collect(topK(n, StockUtil.byPrice)));
+    }
+
     public static void main(final String[] args) {
         findHighPriced(Tickers.symbols.stream());
+        findTopPriced(Tickers.symbols.stream(), 3);
     }
 }
@@ -0,0 +1,85 @@
+package fpij.applying;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Random;
+import java.util.TreeSet;
+
+// The latest price of every ticker, kept in price order as updates arrive.
+// An update replaces the ticker's previous price in a sorted tree, which takes
+// O(log n), so queries such as the top N under $X or all above $Y walk the
+// part of the tree they need instead of sorting every stock again.
+public class PriceBoard {
+
+    private final Map<String, StockInfo> latest = new HashMap<>();
+    // the query bounds use "" for a ticker below any other and null for one
+    // above any other, which StockUtil.byPrice sorts last
+    private final TreeSet<StockInfo> byPrice = new TreeSet<>(StockUtil.byPrice);
+
+    public synchronized void update(final StockInfo stockInfo) {
+        Objects.requireNonNull(stockInfo.price, () -> "no price for " + stockInfo.ticker);
+        final StockInfo previous = latest.put(stockInfo.ticker, stockInfo);
+        if (previous != null) {
+            byPrice.remove(previous);
+        }
+        byPrice.add(stockInfo);
+    }
+
+    public synchronized void updateAll(final Collection<StockInfo> stockInfos) {
+        for (final StockInfo stockInfo : stockInfos) {
+            update(stockInfo);
+        }
+    }
+
+    public synchronized void remove(final String ticker) {
+        final StockInfo previous = latest.remove(ticker);
+        if (previous != null) {
+            byPrice.remove(previous);
+        }
+    }
+
+    // the latest price of the ticker, or null if it has none
+    public synchronized StockInfo get(final String ticker) {
+        return latest.get(ticker);
+    }
+
+    public synchronized int size() {
+        return latest.size();
+    }
+
+    // the n highest priced stocks under the limit, highest first
+    public synchronized List<StockInfo> topUnder(final int n, final BigDecimal limit) {
+        final List<StockInfo> top = new ArrayList<>(Math.min(Math.max(n, 0), byPrice.size()));
+        final Iterator<StockInfo> highestFirst =
+                byPrice.headSet(new StockInfo("", limit), false).descendingIterator();
+        while (top.size() < n && highestFirst.hasNext()) {
+            top.add(highestFirst.next());
+        }
+        return top;
+    }
+
+    // every stock priced over the floor, highest first
+    public synchronized List<StockInfo> above(final BigDecimal floor) {
+        return new ArrayList<>(byPrice.tailSet(new StockInfo(null, floor), false).descendingSet());
+    }
+
+    public static void main(final String[] args) {
+        final PriceBoard board = new PriceBoard();
+        final Random random = new Random(42);
+        for (int update = 0; update < 100_000; update++) {
+            final String ticker = Tickers.symbols.get(random.nextInt(Tickers.symbols.size()));
+            board.update(new StockInfo(ticker, BigDecimal.valueOf(random.nextInt(90000), 2)));
+        }
+        System.out.println(board.size() + " tickers after 100000 updates");
+        System.out.println("3 highest priced under $500:");
+        board.topUnder(3, BigDecimal.valueOf(500)).forEach(System.out::println);
+        System.out.println("Stocks priced over $800:");
+        board.above(BigDecimal.valueOf(800)).forEach(System.out::println);
+    }
+}
@@ -0,0 +1,255 @@
+package fpij.applying;
+
+import com.sun.net.httpserver.HttpServer;
+import fpij.lazy.TaskExecutors;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Fetches quotes in the format of YahooFinance.getPrice - a CSV whose second
+// line ends with the price - for many symbols at once. Every request runs on
+// its own thread, a virtual one where the runtime has them, so a batch waits
+// about one round-trip instead of one per symbol. At most
+// maxConcurrentRequests requests are open at a time - without virtual
+// threads, the requests run on a pool of that many threads - each request has
+// a timeout, and a symbol that is already being fetched shares the request in
+// flight instead of sending another one.
+public class QuoteFetcher {
+
+    public static final String YAHOO = "http://ichart.finance.yahoo.com/table.csv?s=";
+
+    private final String baseUrl;
+    private final Duration timeout;
+    private final Semaphore permits;
+    private final ExecutorService executor;
+    private final HttpClient client;
+    private final Map<String, CompletableFuture<BigDecimal>> inFlight = new ConcurrentHashMap<>();
+
+    public QuoteFetcher() {
+        this(YAHOO, 8, Duration.ofSeconds(10));
+    }
+
+    // the symbol is appended to baseUrl
+    public QuoteFetcher(final String baseUrl, final int maxConcurrentRequests, final Duration timeout) {
+        this.baseUrl = baseUrl;
+        this.timeout = timeout;
+        permits = new Semaphore(maxConcurrentRequests);
+        executor = TaskExecutors.newBoundedExecutor("quote-fetcher", maxConcurrentRequests);
+        client = HttpClient.newBuilder()
+                .connectTimeout(timeout)
+                .build();
+    }
+
+    public CompletableFuture<BigDecimal> fetch(final String ticker) {
+        final CompletableFuture<BigDecimal> created = new CompletableFuture<>();
+        final CompletableFuture<BigDecimal> running = inFlight.putIfAbsent(ticker, created);
+        if (running != null) {
+            return running;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    created.complete(request(ticker));
+                } catch (RuntimeException ex) {
+                    created.completeExceptionally(ex);
+                } finally {
+                    inFlight.remove(ticker, created);
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            inFlight.remove(ticker, created);
+            created.completeExceptionally(ex);
+        }
+        return created;
+    }
+
+    // the price or the failure of every ticker, in the order of the tickers
+    public Quotes fetchAll(final Collection<String> tickers) {
+        final Map<String, CompletableFuture<BigDecimal>> futures = new LinkedHashMap<>();
+        for (final String ticker : tickers) {
+            futures.computeIfAbsent(ticker, this::fetch);
+        }
+        final Map<String, BigDecimal> prices = new LinkedHashMap<>();
+        final Map<String, RuntimeException> errors = new LinkedHashMap<>();
+        for (final Map.Entry<String, CompletableFuture<BigDecimal>> entry : futures.entrySet()) {
+            try {
+                prices.put(entry.getKey(), entry.getValue().join());
+            } catch (CompletionException ex) {
+                errors.put(entry.getKey(),
+                        ex.getCause() instanceof RuntimeException ? (RuntimeException) ex.getCause() : ex);
+            }
+        }
+        return new Quotes(prices, errors);
+    }
+
+    private BigDecimal request(final String ticker) {
+        final HttpRequest request = HttpRequest.newBuilder(
+                URI.create(baseUrl + URLEncoder.encode(ticker, StandardCharsets.UTF_8)))
+                .timeout(timeout)
+                .GET()
+                .build();
+        try {
+            permits.acquire();
+            try {
+                final HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+                if (response.statusCode() != 200) {
+                    throw new RuntimeException("quote for " + ticker + " failed with status " + response.statusCode());
+                }
+                final String data = response.body().lines().skip(1).findFirst()
+                        .orElseThrow(() -> new RuntimeException("no quote for " + ticker));
+                final String[] dataItems = data.split(",");
+                return new BigDecimal(dataItems[dataItems.length - 1]);
+            } finally {
+                permits.release();
+            }
+        } catch (IOException ex) {
+            throw new RuntimeException(ex);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(ex);
+        }
+    }
+
+    public static final class Quotes {
+
+        public final Map<String, BigDecimal> prices;
+        public final Map<String, RuntimeException> errors;
+
+        Quotes(final Map<String, BigDecimal> thePrices, final Map<String, RuntimeException> theErrors) {
+            prices = Collections.unmodifiableMap(thePrices);
+            errors = Collections.unmodifiableMap(theErrors);
+        }
+    }
+
+    // a local server that answers every quote after a fixed delay; SLOW takes
+    // ten times as long and NONE is not found
+    private static final class StubServer {
+
+        final HttpServer server;
+        final int delayMillis;
+        final AtomicInteger requests = new AtomicInteger();
+        final AtomicInteger open = new AtomicInteger();
+        final AtomicInteger mostOpen = new AtomicInteger();
+
+        StubServer(final int delayMillis) throws IOException {
+            this.delayMillis = delayMillis;
+            server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+            server.setExecutor(TaskExecutors.newThreadPerTaskExecutor("quote-server"));
+            server.createContext("/quote", exchange -> {
+                requests.incrementAndGet();
+                mostOpen.accumulateAndGet(open.incrementAndGet(), Math::max);
+                try {
+                    final String ticker = exchange.getRequestURI().getQuery().substring("s=".length());
+                    try {
+                        Thread.sleep("SLOW".equals(ticker) ? 10L * delayMillis : delayMillis);
+                    } catch (InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                    }
+                    if ("NONE".equals(ticker)) {
+                        exchange.sendResponseHeaders(404, -1);
+                        return;
+                    }
+                    final byte[] body = ("Date,Open,High,Low,Close,Volume,Adj Close\n"
+                            + "2014-03-14,1,1,1,1,1000," + (100 + Math.abs(ticker.hashCode() % 900)) + ".25\n")
+                            .getBytes(StandardCharsets.UTF_8);
+                    exchange.sendResponseHeaders(200, body.length);
+                    try (OutputStream out = exchange.getResponseBody()) {
+                        out.write(body);
+                    }
+                } finally {
+                    open.decrementAndGet();
+                    exchange.close();
+                }
+            });
+            server.start();
+        }
+
+        String url() {
+            return "http://127.0.0.1:" + server.getAddress().getPort() + "/quote?s=";
+        }
+
+        void reset() {
+            requests.set(0);
+            mostOpen.set(0);
+        }
+    }
+
+    private static void check(final boolean condition, final String what) {
+        if (!condition) {
+            throw new AssertionError(what);
+        }
+        System.out.println("ok: " + what);
+    }
+
+    // checks the fetcher against the stub and fails on the first surprise
+    public static void main(final String[] args) throws IOException {
+        final StubServer stub = new StubServer(200);
+        try {
+            final QuoteFetcher fetcher = new QuoteFetcher(stub.url(), 4, Duration.ofMillis(1000));
+
+            final CompletableFuture<BigDecimal> first = fetcher.fetch("GOOG");
+            final CompletableFuture<BigDecimal> second = fetcher.fetch("GOOG");
+            check(first == second && first.join().equals(new BigDecimal("400.25")) && stub.requests.get() == 1,
+                    "two fetches of GOOG share one request");
+
+            stub.reset();
+            final List<String> tickers = new ArrayList<>(Tickers.symbols);
+            tickers.addAll(Tickers.symbols.subList(0, 5));
+            final long start = System.nanoTime();
+            final Quotes quotes = fetcher.fetchAll(tickers);
+            final long millis = (System.nanoTime() - start) / 1_000_000;
+            System.out.println(quotes.prices.size() + " prices from " + stub.requests.get() + " requests in "
+                    + millis + " ms, one request takes 200 ms");
+            check(quotes.prices.keySet().equals(new LinkedHashSet<>(Tickers.symbols))
+                    && quotes.errors.isEmpty() && stub.requests.get() == Tickers.symbols.size(),
+                    "a batch fetches every distinct ticker once, in order");
+            check(stub.mostOpen.get() <= 4 && millis >= 5 * 200,
+                    "at most 4 requests open at a time (" + stub.mostOpen.get() + ")");
+
+            stub.reset();
+            final Quotes mixed = fetcher.fetchAll(Arrays.asList("AAPL", "NONE", "SLOW", "IBM"));
+            check(mixed.prices.keySet().equals(new HashSet<>(Arrays.asList("AAPL", "IBM"))),
+                    "failed tickers leave the other prices in the batch");
+            check(mixed.errors.get("NONE").getMessage().contains("status 404"),
+                    "an error status is reported for its ticker");
+            check(mixed.errors.get("SLOW").getCause() instanceof HttpTimeoutException,
+                    "a request slower than the timeout fails with a timeout");
+
+            stub.reset();
+            final QuoteFetcher wide = new QuoteFetcher(stub.url(), Tickers.symbols.size(), Duration.ofMillis(1000));
+            final long wideStart = System.nanoTime();
+            final Quotes all = wide.fetchAll(Tickers.symbols);
+            final long wideMillis = (System.nanoTime() - wideStart) / 1_000_000;
+            check(all.prices.size() == Tickers.symbols.size() && wideMillis < 2 * 200,
+                    "with a request per ticker, " + Tickers.symbols.size() + " tickers take about one request ("
+                            + wideMillis + " ms)");
+        } finally {
+            stub.server.stop(0);
+        }
+    }
+}
@@ -8,14 +8,65 @@
  ** */
 package fpij.applying;
 
+import fpij.designing.CachingFunction;
 import fpij.designing.YahooFinance;
+import fpij.lazy.Lazy;
 import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.function.Predicate;
+import java.util.stream.Collectors;
 
 public class StockUtil {
 
+    // repeated lookups of a ticker within a minute don't go to Yahoo again
+    private static final CachingFunction<String, BigDecimal> prices =
+            CachingFunction.<String, BigDecimal>builder(YahooFinance::getPrice)
+                    .timeToLive(Duration.ofMinutes(1))
+                    .staleWhileRevalidate(Duration.ofMinutes(5))
+                    .negativelyCache(YahooFinance::isUnknownTicker, Duration.ofMinutes(1))
+                    .maximumSize(10_000)
+                    .build();
+
     public static StockInfo getPrice(final String ticker) {
-        return new StockInfo(ticker, YahooFinance.getPrice(ticker));
+        return new StockInfo(ticker, prices.apply(ticker));
+    }
+
+    // created on first use, so the other helpers don't start an HTTP client;
+    // one request per ticker at a time, so pricing Tickers.symbols takes
+    // about one round-trip
+    private static final Lazy<QuoteFetcher> quoteFetcher = Lazy.of(() ->
+            new QuoteFetcher(QuoteFetcher.YAHOO, Tickers.symbols.size(), Duration.ofSeconds(10)));
+
+    // the prices cached by getPrice are used as they are, and the others
+    // are requested together instead of one after another, then cached; a
+    // ticker whose price could not be fetched is left out
+    public static List<StockInfo> getPrices(final List<String> tickers) {
+        final Map<String, BigDecimal> found = new LinkedHashMap<>();
+        final List<String> missing = new ArrayList<>();
+        for (final String ticker : tickers) {
+            if (!found.containsKey(ticker)) {
+                final BigDecimal price = prices.getIfPresent(ticker);
+                found.put(ticker, price);
+                if (price == null) {
+                    missing.add(ticker);
+                }
+            }
+        }
+        if (!missing.isEmpty()) {
+            quoteFetcher.get().fetchAll(missing).prices.forEach((ticker, price) -> {
+                prices.put(ticker, price);
+                found.put(ticker, price);
+            });
+        }
+        return found.entrySet().stream()
+                .filter(entry -> entry.getValue() != null)
+                .map(entry -> new StockInfo(entry.getKey(), entry.getValue()))
+                .collect(Collectors.toList());
     }
     //...
 
@@ -23,6 +74,11 @@ public class StockUtil {
         return stockInfo -> stockInfo.price.compareTo(BigDecimal.valueOf(price)) < 0;
     }
 
+    // by price, then by ticker for stocks at the same price, a null ticker last
+    public static final Comparator<StockInfo> byPrice =
+            Comparator.<StockInfo, BigDecimal>comparing(stockInfo -> stockInfo.price)
+                    .thenComparing(stockInfo -> stockInfo.ticker, Comparator.nullsLast(Comparator.naturalOrder()));
+
     public static StockInfo pickHigh(
             final StockInfo stock1, final StockInfo stock2) {
         return stock1.price.compareTo(stock2.price) > 0 ? stock1 : stock2;
@@ -0,0 +1,61 @@
+package fpij.applying;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.stream.Collector;
+
+// Collects the k greatest elements of a stream without sorting all of them.
+// A min-heap of at most k elements holds the best seen so far, with the
+// weakest on top; a new element either loses to the top or replaces it, so
+// each element costs O(log k) and the memory stays at k.
+public final class TopK {
+
+    private TopK() {
+    }
+
+    // the k greatest elements by order, greatest first
+    public static <T> Collector<T, ?, List<T>> topK(final int k, final Comparator<? super T> order) {
+        return Collector.<T, PriorityQueue<T>, List<T>>of(
+                () -> new PriorityQueue<>(Math.max(1, k), order),
+                (heap, element) -> offer(heap, element, k, order),
+                (left, right) -> {
+                    final PriorityQueue<T> larger = left.size() >= right.size() ? left : right;
+                    final PriorityQueue<T> smaller = larger == left ? right : left;
+                    for (final T element : smaller) {
+                        offer(larger, element, k, order);
+                    }
+                    return larger;
+                },
+                heap -> {
+                    final List<T> best = new ArrayList<>(heap);
+                    best.sort(Collections.reverseOrder(order));
+                    return best;
+                });
+    }
+
+    private static <T> void offer(final PriorityQueue<T> heap, final T element, final int k,
+            final Comparator<? super T> order) {
+        if (heap.size() < k) {
+            heap.add(element);
+        } else if (k > 0 && order.compare(element, heap.peek()) > 0) {
+            heap.poll();
+            heap.add(element);
+        }
+    }
+
+    public static void main(final String[] args) {
+        final List<StockInfo> stocks = new ArrayList<>();
+        for (final String ticker : Tickers.symbols) {
+            stocks.add(new StockInfo(ticker, BigDecimal.valueOf(Math.abs(ticker.hashCode() % 90000), 2)));
+        }
+        System.out.println("3 highest priced under $500:");
+        stocks.stream()
+                .filter(StockUtil.isPriceLessThan(500))
+                .collect(topK(3, StockUtil.byPrice))
+                .forEach(System.out::println);
+    }
+}
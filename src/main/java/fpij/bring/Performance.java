@@ -8,12 +8,15 @@
  ** */
 package fpij.bring;
 
+import fpij.lazy.PrimeSieve;
 import java.util.List;
 import java.util.stream.Stream;
 import java.util.stream.Collectors;
 
 public class Performance {
 
+    // a rough single-shot timer; benchmarks/PrimeCountBenchmark measures the same
+    // prime counts with JMH (warm-up, forks, GC profiler)
     public static double timeIt(final Runnable block) {
         final long start = System.nanoTime();
         block.run();
@@ -89,5 +92,19 @@ public class Performance {
             System.out.println(String.format(format, time / iterations));
             System.out.println("//" + "END:PARALLEL_OUTPUT");
         }
+
+        {
+            System.out.println("//" + "START:SIEVE_OUTPUT");
+            double time = 0;
+            for (int i = 0; i < iterations; i++) {
+                time += timeIt(() -> {
+                    final long primesCount = PrimeSieve.countPrimes(1, limit + 1);
+                    System.out.println(primesCount);
+                });
+            }
+
+            System.out.println(String.format(format, time / iterations));
+            System.out.println("//" + "END:SIEVE_OUTPUT");
+        }
     }
 }
@@ -0,0 +1,450 @@
+package fpij.designing;
+
+import fpij.lazy.TaskExecutors;
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+// A function that remembers its results for a while, such as a price finder
+// in front of a remote source. A result is fresh for timeToLive; after that it
+// is still returned for the staleWhileRevalidate window while a background
+// refresh fetches a new one, so callers only wait for the source on a real
+// miss. Failures that negativelyCache accepts, such as an unknown symbol, are
+// remembered too and thrown again for a while; any other failure is only
+// thrown to the callers of that load. Only one load per key runs at a time:
+// other callers asking for the same key wait for it instead of calling the
+// source.
+// Entries past their stale window are dropped as they are met and by a sweep
+// every SWEEP_EVERY writes; above maximumSize the entries closest to expiry
+// go first. invalidate() also discards loads of the key already running, and
+// invalidateAll() those of every key: their callers still get what they load,
+// but it is not cached.
+public final class CachingFunction<K, V> implements Function<K, V> {
+
+    private static final int SWEEP_EVERY = 1024;
+    private static final ExecutorService REFRESHER = TaskExecutors.newThreadPerTaskExecutor("cache-refresh");
+
+    private final Function<? super K, ? extends V> source;
+    private final long timeToLiveNanos;
+    private final long staleNanos;
+    private final Predicate<? super RuntimeException> negativelyCached;
+    private final long negativeTimeToLiveNanos;
+    private final long maximumSize;
+
+    private final ConcurrentHashMap<K, Entry<V>> entries = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<K, CompletableFuture<V>> loading = new ConcurrentHashMap<>();
+    // moves on every invalidateAll, so a load that started before one can tell;
+    // invalidate(key) takes the load of its key out of loading instead
+    private final AtomicLong generation = new AtomicLong();
+    private final AtomicLong writes = new AtomicLong();
+    private final AtomicBoolean pruning = new AtomicBoolean();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder staleHits = new LongAdder();
+    private final LongAdder negativeHits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder loadFailures = new LongAdder();
+    private final LongAdder refreshes = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    private CachingFunction(final Builder<K, V> builder) {
+        source = builder.source;
+        timeToLiveNanos = builder.timeToLive.toNanos();
+        staleNanos = builder.staleWhileRevalidate.toNanos();
+        negativelyCached = builder.negativelyCached;
+        negativeTimeToLiveNanos = builder.negativeTimeToLive.toNanos();
+        maximumSize = builder.maximumSize;
+    }
+
+    public static <K, V> Builder<K, V> builder(final Function<? super K, ? extends V> source) {
+        return new Builder<>(source);
+    }
+
+    @Override
+    public V apply(final K key) {
+        final Entry<V> entry = entries.get(key);
+        if (entry != null) {
+            final long now = System.nanoTime();
+            if (now - entry.freshUntil < 0) {
+                if (entry.failure != null) {
+                    negativeHits.increment();
+                    throw entry.failure;
+                }
+                hits.increment();
+                return entry.value;
+            }
+            if (entry.failure == null && now - entry.staleUntil < 0) {
+                staleHits.increment();
+                refresh(key);
+                return entry.value;
+            }
+            entries.remove(key, entry);
+        }
+        misses.increment();
+        return load(key);
+    }
+
+    // the cached value, fresh or stale, without calling the source for a
+    // miss; null if there is none or the key is remembered as a failure
+    public V getIfPresent(final K key) {
+        final Entry<V> entry = entries.get(key);
+        if (entry != null && entry.failure == null) {
+            final long now = System.nanoTime();
+            if (now - entry.freshUntil < 0) {
+                hits.increment();
+                return entry.value;
+            }
+            if (now - entry.staleUntil < 0) {
+                staleHits.increment();
+                refresh(key);
+                return entry.value;
+            }
+        }
+        misses.increment();
+        return null;
+    }
+
+    // caches a value loaded somewhere else, such as in a batch
+    public void put(final K key, final V value) {
+        store(key, fresh(value), null, generation.get());
+    }
+
+    private V load(final K key) {
+        final CompletableFuture<V> mine = new CompletableFuture<>();
+        final CompletableFuture<V> other = loading.putIfAbsent(key, mine);
+        if (other != null) {
+            return join(other);
+        }
+        // another load of the key may have stored its result and left loading
+        // between the miss in apply and now
+        final Entry<V> stored = entries.get(key);
+        if (stored != null && System.nanoTime() - stored.freshUntil < 0) {
+            if (stored.failure != null) {
+                mine.completeExceptionally(stored.failure);
+                loading.remove(key, mine);
+                throw stored.failure;
+            }
+            mine.complete(stored.value);
+            loading.remove(key, mine);
+            return stored.value;
+        }
+        final long started = generation.get();
+        try {
+            final V value = source.apply(key);
+            store(key, fresh(value), mine, started);
+            mine.complete(value);
+            return value;
+        } catch (Throwable ex) {
+            loadFailures.increment();
+            if (ex instanceof RuntimeException && negativelyCached.test((RuntimeException) ex)) {
+                store(key, failed((RuntimeException) ex), mine, started);
+            }
+            mine.completeExceptionally(ex);
+            throw ex;
+        } finally {
+            loading.remove(key, mine);
+        }
+    }
+
+    // a failed refresh leaves the stale value to be served until its window ends
+    private void refresh(final K key) {
+        final CompletableFuture<V> mine = new CompletableFuture<>();
+        if (loading.putIfAbsent(key, mine) != null) {
+            return;
+        }
+        refreshes.increment();
+        final long started = generation.get();
+        REFRESHER.execute(() -> {
+            try {
+                final V value = source.apply(key);
+                store(key, fresh(value), mine, started);
+                mine.complete(value);
+            } catch (RuntimeException ex) {
+                loadFailures.increment();
+                mine.completeExceptionally(ex);
+            } catch (Throwable ex) {
+                loadFailures.increment();
+                mine.completeExceptionally(ex);
+                throw ex;
+            } finally {
+                loading.remove(key, mine);
+            }
+        });
+    }
+
+    // load is the future of the load that produced entry, or null for a put
+    private void store(final K key, final Entry<V> entry, final CompletableFuture<V> load, final long started) {
+        if (!current(key, load, started)) {
+            return;
+        }
+        entries.put(key, entry);
+        // an invalidation that came in between may have missed the entry
+        if (!current(key, load, started)) {
+            entries.remove(key, entry);
+            return;
+        }
+        if (writes.incrementAndGet() % SWEEP_EVERY == 0 || entries.size() > maximumSize) {
+            prune();
+        }
+    }
+
+    // false once the load was invalidated, by key or with everything else
+    private boolean current(final K key, final CompletableFuture<V> load, final long started) {
+        return generation.get() == started && (load == null || loading.get(key) == load);
+    }
+
+    // one thread at a time; the others carry on and leave it to that one
+    private void prune() {
+        if (!pruning.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            final long now = System.nanoTime();
+            entries.entrySet().removeIf(entry -> now - entry.getValue().staleUntil >= 0);
+            if (entries.size() > maximumSize) {
+                final List<Map.Entry<K, Entry<V>>> oldest = new ArrayList<>(entries.entrySet());
+                oldest.sort((a, b) -> Long.compare(a.getValue().staleUntil - now, b.getValue().staleUntil - now));
+                // down to three quarters, so the next overflow is some writes away
+                final long excess = entries.size() - maximumSize + maximumSize / 4;
+                for (int i = 0; i < excess && i < oldest.size(); i++) {
+                    if (entries.remove(oldest.get(i).getKey(), oldest.get(i).getValue())) {
+                        evictions.increment();
+                    }
+                }
+            }
+        } finally {
+            pruning.set(false);
+        }
+    }
+
+    private Entry<V> fresh(final V value) {
+        final long freshUntil = System.nanoTime() + timeToLiveNanos;
+        return new Entry<>(value, null, freshUntil, freshUntil + staleNanos);
+    }
+
+    private Entry<V> failed(final RuntimeException failure) {
+        final long freshUntil = System.nanoTime() + negativeTimeToLiveNanos;
+        return new Entry<>(null, failure, freshUntil, freshUntil);
+    }
+
+    private static <V> V join(final CompletableFuture<V> future) {
+        try {
+            return future.join();
+        } catch (CompletionException ex) {
+            if (ex.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ex.getCause();
+            }
+            if (ex.getCause() instanceof Error) {
+                throw (Error) ex.getCause();
+            }
+            throw ex;
+        }
+    }
+
+    public void invalidate(final K key) {
+        loading.remove(key);
+        entries.remove(key);
+    }
+
+    public void invalidateAll() {
+        generation.incrementAndGet();
+        loading.clear();
+        entries.clear();
+    }
+
+    public long size() {
+        return entries.size();
+    }
+
+    public Stats stats() {
+        return new Stats(hits.sum(), staleHits.sum(), negativeHits.sum(), misses.sum(),
+                loadFailures.sum(), refreshes.sum(), evictions.sum());
+    }
+
+    private static final class Entry<V> {
+
+        final V value;
+        // set instead of value for a remembered failure
+        final RuntimeException failure;
+        final long freshUntil;
+        final long staleUntil;
+
+        Entry(final V value, final RuntimeException failure, final long freshUntil, final long staleUntil) {
+            this.value = value;
+            this.failure = failure;
+            this.freshUntil = freshUntil;
+            this.staleUntil = staleUntil;
+        }
+    }
+
+    public static final class Stats {
+
+        public final long hitCount;
+        public final long staleHitCount;
+        public final long negativeHitCount;
+        public final long missCount;
+        public final long loadFailureCount;
+        public final long refreshCount;
+        public final long evictionCount;
+
+        Stats(final long hitCount, final long staleHitCount, final long negativeHitCount, final long missCount,
+                final long loadFailureCount, final long refreshCount, final long evictionCount) {
+            this.hitCount = hitCount;
+            this.staleHitCount = staleHitCount;
+            this.negativeHitCount = negativeHitCount;
+            this.missCount = missCount;
+            this.loadFailureCount = loadFailureCount;
+            this.refreshCount = refreshCount;
+            this.evictionCount = evictionCount;
+        }
+
+        // every call answered without waiting for the source
+        public double hitRate() {
+            final long answered = hitCount + staleHitCount + negativeHitCount;
+            final long requests = answered + missCount;
+            return requests == 0 ? 1.0 : (double) answered / requests;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("hits: %d stale: %d negative: %d misses: %d (hit rate %.2f) "
+                    + "load failures: %d refreshes: %d evictions: %d",
+                    hitCount, staleHitCount, negativeHitCount, missCount, hitRate(), loadFailureCount, refreshCount,
+                    evictionCount);
+        }
+    }
+
+    public static final class Builder<K, V> {
+
+        private final Function<? super K, ? extends V> source;
+        private Duration timeToLive = Duration.ofMinutes(1);
+        private Duration staleWhileRevalidate = Duration.ZERO;
+        private Predicate<? super RuntimeException> negativelyCached = failure -> false;
+        private Duration negativeTimeToLive = Duration.ZERO;
+        private long maximumSize = Long.MAX_VALUE;
+
+        private Builder(final Function<? super K, ? extends V> source) {
+            this.source = source;
+        }
+
+        public Builder<K, V> timeToLive(final Duration duration) {
+            timeToLive = duration;
+            return this;
+        }
+
+        // how long after timeToLive a value may still be served while it is refreshed
+        public Builder<K, V> staleWhileRevalidate(final Duration duration) {
+            staleWhileRevalidate = duration;
+            return this;
+        }
+
+        // the failures that mean the answer is "no such key", such as an
+        // unknown symbol, and how long they are thrown again without asking
+        // the source; a timeout or a dropped connection should not match
+        public Builder<K, V> negativelyCache(final Predicate<? super RuntimeException> isMissing,
+                final Duration duration) {
+            negativelyCached = isMissing;
+            negativeTimeToLive = duration;
+            return this;
+        }
+
+        public Builder<K, V> maximumSize(final long size) {
+            maximumSize = size;
+            return this;
+        }
+
+        public CachingFunction<K, V> build() {
+            return new CachingFunction<>(this);
+        }
+    }
+
+    public static void main(final String[] args) throws InterruptedException {
+        final AtomicInteger calls = new AtomicInteger();
+        final CachingFunction<String, BigDecimal> priceFinder = CachingFunction.<String, BigDecimal>builder(ticker -> {
+            calls.incrementAndGet();
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException ex) {
+                throw new RuntimeException(ex);
+            }
+            if (ticker.startsWith("X")) {
+                throw new IllegalArgumentException("unknown symbol " + ticker);
+            }
+            if (ticker.startsWith("T")) {
+                throw new IllegalStateException("timed out fetching " + ticker);
+            }
+            return BigDecimal.valueOf(500 + calls.get(), 2);
+        })
+                .timeToLive(Duration.ofMillis(200))
+                .staleWhileRevalidate(Duration.ofSeconds(1))
+                .negativelyCache(failure -> failure instanceof IllegalArgumentException, Duration.ofSeconds(1))
+                .maximumSize(1000)
+                .build();
+
+        final Thread[] callers = new Thread[4];
+        for (int i = 0; i < callers.length; i++) {
+            callers[i] = new Thread(() -> priceFinder.apply("GOOG"));
+            callers[i].start();
+        }
+        for (final Thread caller : callers) {
+            caller.join();
+        }
+        System.out.println("4 concurrent callers, source calls: " + calls.get());
+
+        final CalculateNAV calculateNav = new CalculateNAV(priceFinder);
+        System.out.println("100 shares of GOOG: " + calculateNav.computeStockWorth("GOOG", 100));
+
+        Thread.sleep(250);
+        final long start = System.nanoTime();
+        System.out.println("stale: " + calculateNav.computeStockWorth("GOOG", 100)
+                + " in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+        Thread.sleep(150);
+        System.out.println("refreshed: " + calculateNav.computeStockWorth("GOOG", 100));
+
+        for (final String ticker : new String[] {"XXXX", "XXXX", "XXXX", "TIME", "TIME"}) {
+            try {
+                priceFinder.apply(ticker);
+            } catch (RuntimeException ex) {
+                System.out.println(ex.getMessage());
+            }
+        }
+        System.out.println("source calls: " + calls.get());
+
+        // invalidating one key leaves the loads of the others alone
+        final Thread slow = new Thread(() -> priceFinder.apply("SLOW"));
+        slow.start();
+        Thread.sleep(30);
+        priceFinder.invalidate("OTHER");
+        slow.join();
+        final int before = calls.get();
+        priceFinder.apply("SLOW");
+        if (calls.get() != before) {
+            throw new AssertionError("invalidate(\"OTHER\") discarded the load of SLOW");
+        }
+        System.out.println("SLOW cached across invalidate(\"OTHER\")");
+
+        // invalidating the key itself discards its running load
+        final Thread discarded = new Thread(() -> priceFinder.apply("MSFT"));
+        discarded.start();
+        Thread.sleep(30);
+        priceFinder.invalidate("MSFT");
+        discarded.join();
+        if (priceFinder.getIfPresent("MSFT") != null) {
+            throw new AssertionError("invalidate(\"MSFT\") kept the load of MSFT");
+        }
+        System.out.println("MSFT not cached after invalidate(\"MSFT\")");
+        System.out.println(priceFinder.stats());
+    }
+}
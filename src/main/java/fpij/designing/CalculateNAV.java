@@ -9,6 +9,7 @@
 package fpij.designing;
 
 import java.math.BigDecimal;
+import java.time.Duration;
 import java.util.function.Function;
 
 public class CalculateNAV {
@@ -25,7 +26,12 @@ public class CalculateNAV {
     }
 
     public static void main(String[] args) {
-        final CalculateNAV calculateNav = new CalculateNAV(YahooFinance::getPrice);
+        final CalculateNAV calculateNav = new CalculateNAV(
+                CachingFunction.<String, BigDecimal>builder(YahooFinance::getPrice)
+                        .timeToLive(Duration.ofMinutes(1))
+                        .staleWhileRevalidate(Duration.ofMinutes(5))
+                        .negativelyCache(YahooFinance::isUnknownTicker, Duration.ofMinutes(1))
+                        .build());
 
         System.out.println(String.format("100 shares of Google worth: $%.2f",
                 calculateNav.computeStockWorth("GOOG", 100)));
@@ -0,0 +1,314 @@
+package fpij.designing;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+// Reads CSV records straight out of a ByteBuffer, typically a mapped file.
+// A field is reported as a slice of the buffer - fieldStart() to fieldEnd(),
+// without its quotes - so walking a file allocates nothing; the parsers below
+// read numbers and money values such as $43.39M from the slice in place, and
+// only fieldAsString() makes a copy. Fields may be quoted, with "" standing
+// for a quote inside them; records end with \n, \r\n or \r, and blank lines
+// are skipped. Bytes are taken as single-byte (ISO-8859-1) characters.
+public final class CsvTokenizer {
+
+    private final ByteBuffer buffer;
+    private final int limit;
+    private int position;
+    private boolean inRecord;
+    private boolean endOfRecord;
+
+    private int fieldStart;
+    private int fieldEnd;
+    private boolean quoted;
+    private boolean escaped;
+
+    // reads from the buffer's position to its limit without moving either
+    public CsvTokenizer(final ByteBuffer buffer) {
+        this.buffer = buffer;
+        position = buffer.position();
+        limit = buffer.limit();
+    }
+
+    // moves to the next record, skipping whatever is left of the current one
+    public boolean nextRecord() {
+        if (inRecord) {
+            while (nextField()) {
+                // skip
+            }
+        }
+        while (position < limit && isLineBreak(buffer.get(position))) {
+            position++;
+        }
+        inRecord = position < limit;
+        endOfRecord = !inRecord;
+        return inRecord;
+    }
+
+    // moves to the next field of the current record
+    public boolean nextField() {
+        if (endOfRecord) {
+            return false;
+        }
+        int at = position;
+        escaped = false;
+        quoted = at < limit && buffer.get(at) == '"';
+        if (quoted) {
+            fieldStart = ++at;
+            while (at < limit) {
+                if (buffer.get(at) == '"') {
+                    if (at + 1 < limit && buffer.get(at + 1) == '"') {
+                        escaped = true;
+                        at += 2;
+                        continue;
+                    }
+                    break;
+                }
+                at++;
+            }
+            fieldEnd = at;
+            // anything between the closing quote and the delimiter is dropped
+            while (at < limit && buffer.get(at) != ',' && !isLineBreak(buffer.get(at))) {
+                at++;
+            }
+        } else {
+            fieldStart = at;
+            while (at < limit && buffer.get(at) != ',' && !isLineBreak(buffer.get(at))) {
+                at++;
+            }
+            fieldEnd = at;
+        }
+        if (at < limit && buffer.get(at) == ',') {
+            position = at + 1;
+        } else {
+            position = at;
+            endOfRecord = true;
+        }
+        return true;
+    }
+
+    private static boolean isLineBreak(final byte b) {
+        return b == '\n' || b == '\r';
+    }
+
+    public int fieldStart() {
+        return fieldStart;
+    }
+
+    public int fieldEnd() {
+        return fieldEnd;
+    }
+
+    public int fieldLength() {
+        return fieldEnd - fieldStart;
+    }
+
+    public boolean isQuoted() {
+        return quoted;
+    }
+
+    // the first character of the field, or -1 if it is empty
+    public int firstChar() {
+        return fieldStart < fieldEnd ? buffer.get(fieldStart) & 0xFF : -1;
+    }
+
+    public boolean fieldEquals(final CharSequence text) {
+        if (escaped) {
+            return fieldAsString().contentEquals(text);
+        }
+        if (text.length() != fieldLength()) {
+            return false;
+        }
+        for (int i = 0; i < text.length(); i++) {
+            if ((buffer.get(fieldStart + i) & 0xFF) != text.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public String fieldAsString() {
+        final byte[] bytes = new byte[fieldLength()];
+        int length = 0;
+        for (int at = fieldStart; at < fieldEnd; at++) {
+            bytes[length++] = buffer.get(at);
+            if (escaped && buffer.get(at) == '"') {
+                at++;
+            }
+        }
+        return new String(bytes, 0, length, StandardCharsets.ISO_8859_1);
+    }
+
+    public long fieldAsLong() {
+        int at = fieldStart;
+        final boolean negative = at < fieldEnd && buffer.get(at) == '-';
+        if (negative || (at < fieldEnd && buffer.get(at) == '+')) {
+            at++;
+        }
+        if (at == fieldEnd) {
+            throw new NumberFormatException("not a number: \"" + fieldAsString() + "\"");
+        }
+        long value = 0;
+        for (; at < fieldEnd; at++) {
+            final int digit = buffer.get(at) - '0';
+            if (digit < 0 || digit > 9 || value > (Long.MAX_VALUE - digit) / 10) {
+                throw new NumberFormatException("not a number: \"" + fieldAsString() + "\"");
+            }
+            value = value * 10 + digit;
+        }
+        return negative ? -value : value;
+    }
+
+    // an optional sign, digits and an optional fraction; false if the field is anything else
+    public boolean fieldAsDecimal(final Decimal into) {
+        int at = fieldStart;
+        final boolean negative = at < fieldEnd && buffer.get(at) == '-';
+        if (negative || (at < fieldEnd && buffer.get(at) == '+')) {
+            at++;
+        }
+        if (digits(at, fieldEnd, into) != fieldEnd) {
+            return false;
+        }
+        if (negative) {
+            into.unscaled = -into.unscaled;
+        }
+        return true;
+    }
+
+    // $, digits, an optional fraction and an optional K, M, B or T; the $ may be missing
+    public boolean fieldAsMoney(final Decimal into) {
+        int at = fieldStart;
+        if (at < fieldEnd && buffer.get(at) == '$') {
+            at++;
+        }
+        int end = fieldEnd;
+        int exponent = 0;
+        if (end > at) {
+            switch (buffer.get(end - 1)) {
+                case 'K':
+                    exponent = 3;
+                    break;
+                case 'M':
+                    exponent = 6;
+                    break;
+                case 'B':
+                    exponent = 9;
+                    break;
+                case 'T':
+                    exponent = 12;
+                    break;
+                default:
+                    break;
+            }
+            if (exponent != 0) {
+                end--;
+            }
+        }
+        if (digits(at, end, into) != end) {
+            return false;
+        }
+        into.exponent = exponent;
+        return true;
+    }
+
+    // reads digits with at most one point into into, and returns where it
+    // stopped; a number without digits, or one too long for a long, returns -1
+    // and leaves into alone
+    private int digits(final int from, final int to, final Decimal into) {
+        long unscaled = 0;
+        int scale = -1;
+        int count = 0;
+        int at = from;
+        for (; at < to; at++) {
+            final byte b = buffer.get(at);
+            if (b == '.' && scale < 0) {
+                scale = 0;
+                continue;
+            }
+            if (b < '0' || b > '9') {
+                break;
+            }
+            if (++count > 18) {
+                return -1;
+            }
+            unscaled = unscaled * 10 + (b - '0');
+            if (scale >= 0) {
+                scale++;
+            }
+        }
+        if (count == 0) {
+            return -1;
+        }
+        into.unscaled = unscaled;
+        into.scale = Math.max(scale, 0);
+        into.exponent = 0;
+        return at;
+    }
+
+    // a number read by the parsers, reused from field to field
+    public static final class Decimal {
+
+        long unscaled;
+        int scale;
+        // the power of ten of a K, M, B or T suffix
+        int exponent;
+
+        public long unscaled() {
+            return unscaled;
+        }
+
+        public int scale() {
+            return scale;
+        }
+
+        public int exponent() {
+            return exponent;
+        }
+
+        // the digits as written, without the suffix: 43.39 for $43.39M
+        public BigDecimal mantissa() {
+            return BigDecimal.valueOf(unscaled, scale);
+        }
+
+        // the whole amount: 43390000 for $43.39M
+        public BigDecimal amount() {
+            return BigDecimal.valueOf(unscaled, scale - exponent);
+        }
+    }
+
+    public static void main(final String[] args) {
+        final ByteBuffer csv = ByteBuffer.wrap(("\"Symbol\",\"Name\",\"LastSale\",\"MarketCap\",\n"
+                + "\"PIH\",\"1347 Property Insurance Holdings, Inc.\",\"7.2\",\"$43.39M\",\r\n"
+                + "\n"
+                + "SRCE,\"1st \"\"Source\"\" Corporation\",39.825,$1.03B\n").getBytes(StandardCharsets.ISO_8859_1));
+        final CsvTokenizer tokenizer = new CsvTokenizer(csv);
+        final Decimal number = new Decimal();
+        tokenizer.nextRecord();
+        while (tokenizer.nextRecord()) {
+            tokenizer.nextField();
+            final String symbol = tokenizer.fieldAsString();
+            tokenizer.nextField();
+            final String name = tokenizer.fieldAsString();
+            tokenizer.nextField();
+            tokenizer.fieldAsDecimal(number);
+            final BigDecimal lastSale = number.mantissa();
+            tokenizer.nextField();
+            tokenizer.fieldAsMoney(number);
+            System.out.println(symbol + " | " + name + " | " + lastSale + " | " + number.amount().toPlainString());
+        }
+
+        // fields without a digit are not numbers, whatever the previous field held
+        final CsvTokenizer bad = new CsvTokenizer(ByteBuffer.wrap(
+                "12.5,,-,$,$M,.,-.\n".getBytes(StandardCharsets.ISO_8859_1)));
+        bad.nextRecord();
+        bad.nextField();
+        bad.fieldAsDecimal(number);
+        while (bad.nextField()) {
+            if (bad.fieldAsDecimal(number) || bad.fieldAsMoney(number)) {
+                throw new AssertionError("\"" + bad.fieldAsString() + "\" parsed as " + number.amount());
+            }
+            System.out.println("\"" + bad.fieldAsString() + "\" is not a number");
+        }
+    }
+}
@@ -0,0 +1,333 @@
+package fpij.designing;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.PosixFileAttributes;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.nio.file.attribute.UserPrincipal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+// The prices of the company list, parsed once into a binary index file and
+// memory-mapped from there. The index is an open-addressing hash table keyed
+// by symbol, so a lookup is a hash and a probe or two in the mapped file, not
+// a scan of the CSV. It records the size and modification time of the CSV it
+// was built from: a stale index is rebuilt on open, and a CSV that changes
+// while the store is in use is picked up within a second. An index that
+// does not hold together - a bad header, slot or key offset - counts as
+// stale, and a lookup probes at most every slot once.
+// A price is what getPrices always returned: the first field of the symbol's
+// line that starts with $, with everything but digits and the point removed.
+public final class PriceStore {
+
+    private static final int MAGIC = 0x50524331;
+    // magic, slot count, CSV size, CSV modification time, entry count
+    private static final int HEADER = 4 + 4 + 8 + 8 + 4;
+    // hash, key position, key length, scale, unscaled value
+    private static final int SLOT = 4 + 4 + 4 + 4 + 8;
+    private static final long RECHECK_NANOS = 1_000_000_000L;
+    private static final BigDecimal NOT_FOUND = BigDecimal.valueOf(0.00);
+
+    private final Path csv;
+    private final Path index;
+    private volatile Snapshot snapshot;
+    private volatile long nextCheck;
+
+    public PriceStore(final Path csvFile, final Path indexFile) {
+        csv = csvFile;
+        index = indexFile;
+        snapshot = open();
+        nextCheck = System.nanoTime() + RECHECK_NANOS;
+    }
+
+    // the index goes to a directory under java.io.tmpdir that only this user
+    // can use; a resource inside a jar is copied there first, but only when
+    // the copy is missing or different, so the index built from it is reused
+    public static PriceStore forResource(final String resourceName) {
+        final URL resource = PriceStore.class.getClassLoader().getResource(resourceName);
+        if (resource == null) {
+            throw new IllegalArgumentException("file is not found! " + resourceName);
+        }
+        try {
+            final Path dir = privateDirectory();
+            final String name = Paths.get(resourceName).getFileName().toString();
+            Path csvFile;
+            if ("file".equals(resource.getProtocol())) {
+                csvFile = Paths.get(resource.toURI());
+            } else {
+                csvFile = dir.resolve(name);
+                final byte[] content;
+                try (InputStream in = resource.openStream()) {
+                    content = in.readAllBytes();
+                }
+                if (!Files.exists(csvFile) || Files.size(csvFile) != content.length
+                        || !Arrays.equals(Files.readAllBytes(csvFile), content)) {
+                    replace(csvFile, content);
+                }
+            }
+            return new PriceStore(csvFile, dir.resolve(name + ".index"));
+        } catch (IOException | URISyntaxException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    // tmpdir/price-store-<user>, unless someone else got there first, in
+    // which case a fresh temporary directory that is not reused
+    private static Path privateDirectory() throws IOException {
+        final Path dir = Paths.get(System.getProperty("java.io.tmpdir"), "price-store-" + System.getProperty("user.name"));
+        if (!FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) {
+            return Files.createDirectories(dir);
+        }
+        final Set<PosixFilePermission> ownerOnly = PosixFilePermissions.fromString("rwx------");
+        try {
+            Files.createDirectory(dir, PosixFilePermissions.asFileAttribute(ownerOnly));
+        } catch (FileAlreadyExistsException ex) {
+            // checked below
+        }
+        final PosixFileAttributes attributes =
+                Files.readAttributes(dir, PosixFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+        final UserPrincipal user = FileSystems.getDefault().getUserPrincipalLookupService()
+                .lookupPrincipalByName(System.getProperty("user.name"));
+        if (attributes.isDirectory() && attributes.permissions().equals(ownerOnly) && attributes.owner().equals(user)) {
+            return dir;
+        }
+        return Files.createTempDirectory("price-store");
+    }
+
+    // readers of the old file keep what they opened; the new one replaces it whole
+    private static void replace(final Path file, final byte[] content) throws IOException {
+        final Path partial = file.resolveSibling(file.getFileName() + ".partial");
+        Files.write(partial, content);
+        Files.move(partial, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public BigDecimal getPrice(final String ticker) {
+        final Snapshot current = current();
+        final ByteBuffer buffer = current.buffer;
+        final int hash = hash(ticker);
+        final int mask = current.slots - 1;
+        int slot = hash & mask;
+        for (int probe = 0; probe < current.slots; probe++, slot = (slot + 1) & mask) {
+            final int at = HEADER + slot * SLOT;
+            final int keyLength = buffer.getInt(at + 8);
+            if (keyLength == 0) {
+                return NOT_FOUND;
+            }
+            if (buffer.getInt(at) == hash && keyLength == ticker.length()
+                    && keyEquals(buffer, current.keys + 2 * buffer.getInt(at + 4), ticker)) {
+                return BigDecimal.valueOf(buffer.getLong(at + 16), buffer.getInt(at + 12));
+            }
+        }
+        return NOT_FOUND;
+    }
+
+    public int size() {
+        return current().buffer.getInt(24);
+    }
+
+    private static boolean keyEquals(final ByteBuffer buffer, final int at, final String ticker) {
+        for (int i = 0; i < ticker.length(); i++) {
+            if (buffer.getChar(at + 2 * i) != ticker.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int hash(final String ticker) {
+        final int h = ticker.hashCode() * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private Snapshot current() {
+        final long now = System.nanoTime();
+        if (now - nextCheck >= 0) {
+            synchronized (this) {
+                if (now - nextCheck >= 0) {
+                    if (!snapshot.isBuiltFrom(attributes())) {
+                        snapshot = open();
+                    }
+                    nextCheck = now + RECHECK_NANOS;
+                }
+            }
+        }
+        return snapshot;
+    }
+
+    private BasicFileAttributes attributes() {
+        try {
+            return Files.readAttributes(csv, BasicFileAttributes.class);
+        } catch (IOException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    private Snapshot open() {
+        try {
+            final BasicFileAttributes source = attributes();
+            if (Files.exists(index)) {
+                final Snapshot existing = map();
+                if (existing.isBuiltFrom(source)) {
+                    return existing;
+                }
+            }
+            build(source);
+            final Snapshot built = map();
+            if (!built.isBuiltFrom(source)) {
+                throw new IllegalStateException("index " + index + " changed while it was being built");
+            }
+            return built;
+        } catch (IOException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    private Snapshot map() throws IOException {
+        try (FileChannel channel = FileChannel.open(index, StandardOpenOption.READ)) {
+            return new Snapshot(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    private void build(final BasicFileAttributes source) throws IOException {
+        final List<String> tickers = new ArrayList<>();
+        final List<BigDecimal> prices = new ArrayList<>();
+        final Set<String> seen = new HashSet<>();
+        try (FileChannel channel = FileChannel.open(csv, StandardOpenOption.READ)) {
+            final CsvTokenizer tokenizer = new CsvTokenizer(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+            final CsvTokenizer.Decimal price = new CsvTokenizer.Decimal();
+            while (tokenizer.nextRecord()) {
+                tokenizer.nextField();
+                if (!tokenizer.isQuoted() || tokenizer.fieldLength() == 0) {
+                    continue;
+                }
+                final String ticker = tokenizer.fieldAsString();
+                // a later line for the same symbol only counts if the first had no price
+                if (!seen.contains(ticker) && findPrice(tokenizer, price)) {
+                    seen.add(ticker);
+                    tickers.add(ticker);
+                    prices.add(price.mantissa());
+                }
+            }
+        }
+
+        int slots = 16;
+        while (slots < tickers.size() * 2) {
+            slots *= 2;
+        }
+        int keyChars = 0;
+        for (final String ticker : tickers) {
+            keyChars += ticker.length();
+        }
+        final ByteBuffer buffer = ByteBuffer.allocate(HEADER + slots * SLOT + 2 * keyChars);
+        buffer.putInt(0, MAGIC).putInt(4, slots)
+                .putLong(8, source.size()).putLong(16, source.lastModifiedTime().toMillis())
+                .putInt(24, tickers.size());
+        final int keys = HEADER + slots * SLOT;
+        int keyPosition = 0;
+        for (int i = 0; i < tickers.size(); i++) {
+            final String ticker = tickers.get(i);
+            final int hash = hash(ticker);
+            int slot = hash & (slots - 1);
+            while (buffer.getInt(HEADER + slot * SLOT + 8) != 0) {
+                slot = (slot + 1) & (slots - 1);
+            }
+            final int at = HEADER + slot * SLOT;
+            buffer.putInt(at, hash).putInt(at + 4, keyPosition).putInt(at + 8, ticker.length())
+                    .putInt(at + 12, prices.get(i).scale()).putLong(at + 16, prices.get(i).unscaledValue().longValueExact());
+            for (int c = 0; c < ticker.length(); c++) {
+                buffer.putChar(keys + 2 * (keyPosition + c), ticker.charAt(c));
+            }
+            keyPosition += ticker.length();
+        }
+
+        replace(index, buffer.array());
+    }
+
+    // the first field of the record, the symbol included, that is a $ amount;
+    // getPrices always dropped the M or B of the market cap, so the mantissa is kept
+    private static boolean findPrice(final CsvTokenizer tokenizer, final CsvTokenizer.Decimal into) {
+        do {
+            if (tokenizer.firstChar() == '$' && tokenizer.fieldAsMoney(into)) {
+                return true;
+            }
+        } while (tokenizer.nextField());
+        return false;
+    }
+
+    private static final class Snapshot {
+
+        final ByteBuffer buffer;
+        final boolean valid;
+        final int slots;
+        final int keys;
+
+        Snapshot(final ByteBuffer buffer) {
+            this.buffer = buffer;
+            valid = isValid(buffer);
+            slots = valid ? buffer.getInt(4) : 0;
+            keys = HEADER + slots * SLOT;
+        }
+
+        // the header, every slot and every key fit in the file, and the
+        // slots in use are as many as the header says
+        private static boolean isValid(final ByteBuffer buffer) {
+            final int capacity = buffer.capacity();
+            if (capacity < HEADER || buffer.getInt(0) != MAGIC) {
+                return false;
+            }
+            final int slots = buffer.getInt(4);
+            final int size = buffer.getInt(24);
+            if (slots <= 0 || Integer.bitCount(slots) != 1 || size < 0 || size >= slots
+                    || (long) HEADER + (long) slots * SLOT > capacity) {
+                return false;
+            }
+            final long keyChars = (capacity - HEADER - (long) slots * SLOT) / 2;
+            int used = 0;
+            for (int slot = 0; slot < slots; slot++) {
+                final int at = HEADER + slot * SLOT;
+                final int keyLength = buffer.getInt(at + 8);
+                final int keyPosition = buffer.getInt(at + 4);
+                if (keyLength < 0 || keyLength > 0 && (keyPosition < 0 || (long) keyPosition + keyLength > keyChars)) {
+                    return false;
+                }
+                if (keyLength > 0) {
+                    used++;
+                }
+            }
+            return used == size;
+        }
+
+        // false for anything that is not a complete index, such as a file left by another program
+        boolean isBuiltFrom(final BasicFileAttributes source) {
+            return valid
+                    && buffer.getLong(8) == source.size()
+                    && buffer.getLong(16) == source.lastModifiedTime().toMillis();
+        }
+    }
+
+    public static void main(final String[] args) {
+        final PriceStore store = forResource("fpij/designing/nasdaq-companylist.csv");
+        System.out.println(store.size() + " prices indexed");
+        for (final String ticker : new String[] {"GOOG", "AAPL", "PIH", "DRYS", "NONE"}) {
+            System.out.println(ticker + ": " + store.getPrice(ticker));
+        }
+    }
+}
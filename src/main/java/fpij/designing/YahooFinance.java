@@ -8,13 +8,17 @@
  ** */
 package fpij.designing;
 
+import fpij.lazy.Lazy;
 import java.math.BigDecimal;
 import java.net.URL;
 import java.io.BufferedReader;
 import java.io.File;
+import java.io.FileNotFoundException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.Reader;
+import java.util.NoSuchElementException;
+import java.util.Optional;
 import java.util.regex.Pattern;
 
 public class YahooFinance {
@@ -33,7 +37,37 @@ public class YahooFinance {
         }
     }
 
+    // true for a failure of getPrice that means Yahoo has no such symbol: a
+    // 404 or a table without rows, rather than a timeout or a dropped connection
+    public static boolean isUnknownTicker(final RuntimeException failure) {
+        return failure.getCause() instanceof FileNotFoundException
+                || failure.getCause() instanceof NoSuchElementException;
+    }
+
+    // parsed once into an index instead of rereading the CSV on every call;
+    // empty if the index cannot be built, such as without a writable tmpdir
+    private static final Lazy<Optional<PriceStore>> PRICES = Lazy.of(() -> {
+        try {
+            return Optional.of(PriceStore.forResource("fpij/designing/nasdaq-companylist.csv"));
+        } catch (RuntimeException ex) {
+            return Optional.empty();
+        }
+    });
+
     public static BigDecimal getPrices(final String ticker) {
+        final Optional<PriceStore> store = PRICES.get();
+        if (store.isPresent()) {
+            try {
+                return store.get().getPrice(ticker);
+            } catch (RuntimeException ex) {
+                // the CSV changed and the index could not be rebuilt
+            }
+        }
+        return getPricesByScan(ticker);
+    }
+
+    // the original scan of the whole CSV, kept for comparison
+    static BigDecimal getPricesByScan(final String ticker) {
         final InputStream inputStream = YahooFinance.class
                 .getClassLoader()
                 .getResourceAsStream("fpij/designing/nasdaq-companylist.csv");
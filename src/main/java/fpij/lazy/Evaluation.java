@@ -37,6 +37,12 @@ public class Evaluation {
         System.out.println("accept?: " + (input1.get() && input2.get()));
     }
 
+    // both inputs run at once, so two slow checks cost one
+    public static void speculativeEvaluator(final Supplier<Boolean> input1, final Supplier<Boolean> input2) {
+        System.out.println("speculativeEvaluator called...");
+        System.out.println("accept?: " + Speculative.and(input1, input2));
+    }
+
     public static void main(final String[] args) {
         System.out.println("//" + "START:EAGER_OUTPUT");
         eagerEvaluator(evaluate(1), evaluate(2));
@@ -45,5 +51,11 @@ public class Evaluation {
         System.out.println("//" + "START:LAZY_OUTPUT");
         lazyEvaluator(() -> evaluate(1), () -> evaluate(2));
         System.out.println("//" + "END:LAZY_OUTPUT");
+
+        System.out.println("//" + "START:SPECULATIVE_OUTPUT");
+        final long start = System.nanoTime();
+        speculativeEvaluator(() -> evaluate(101), () -> evaluate(102));
+        System.out.println(String.format("%.1f seconds", (System.nanoTime() - start) / 1.0e9));
+        System.out.println("//" + "END:SPECULATIVE_OUTPUT");
     }
 }
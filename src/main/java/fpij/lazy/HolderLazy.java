@@ -0,0 +1,22 @@
+package fpij.lazy;
+
+public class HolderLazy {
+
+    // getHeavy is a single acquire read once the Heavy exists
+    private final Lazy<Heavy> heavy = Lazy.of(Heavy::new);
+
+    public HolderLazy() {
+        System.out.println("Holder created");
+    }
+
+    public Heavy getHeavy() {
+        return heavy.get();
+    }
+
+    public static void main(final String[] args) {
+        final HolderLazy holder = new HolderLazy();
+        System.out.println("deferring heavy creation...");
+        System.out.println(holder.getHeavy());
+        System.out.println(holder.getHeavy());
+    }
+}
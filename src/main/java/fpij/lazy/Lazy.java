@@ -0,0 +1,158 @@
+package fpij.lazy;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.time.Duration;
+import java.util.function.Supplier;
+
+// A value computed on first use and then shared by every thread.
+// Reading a ready value is one acquire load, paired with the release store
+// that published it, so the hot path never locks. With of(), only one thread
+// runs the supplier while the others wait for it; with racy(), threads that
+// meet an empty holder may all run the supplier, but the first result to be
+// published wins and is the one everybody gets. If the supplier throws, the
+// holder stays empty and the next get() tries again. reset() empties it by
+// hand, and expireAfter() makes a value go stale a fixed time after it was built.
+public final class Lazy<T> implements Supplier<T> {
+
+    private static final VarHandle CURRENT;
+
+    static {
+        try {
+            CURRENT = MethodHandles.lookup().findVarHandle(Lazy.class, "current", Value.class);
+        } catch (ReflectiveOperationException ex) {
+            throw new ExceptionInInitializerError(ex);
+        }
+    }
+
+    private final Supplier<? extends T> supplier;
+    private final boolean racy;
+    private final long timeToLiveNanos;
+    private final Object initLock = new Object();
+    // accessed only through CURRENT
+    @SuppressWarnings("unused")
+    private Value<T> current;
+
+    private Lazy(final Supplier<? extends T> supplier, final boolean racy, final long timeToLiveNanos) {
+        this.supplier = supplier;
+        this.racy = racy;
+        this.timeToLiveNanos = timeToLiveNanos;
+    }
+
+    public static <T> Lazy<T> of(final Supplier<? extends T> supplier) {
+        return new Lazy<>(supplier, false, 0);
+    }
+
+    // for suppliers that are cheap enough, and free enough of side effects,
+    // to run more than once
+    public static <T> Lazy<T> racy(final Supplier<? extends T> supplier) {
+        return new Lazy<>(supplier, true, 0);
+    }
+
+    // a new, empty holder with the same supplier and mode
+    public Lazy<T> expireAfter(final Duration timeToLive) {
+        return new Lazy<>(supplier, racy, Math.max(1, timeToLive.toNanos()));
+    }
+
+    @Override
+    public T get() {
+        final Value<T> value = acquire();
+        if (value != null && !value.isExpired()) {
+            return value.value;
+        }
+        return racy ? initRacy(value) : initOnce();
+    }
+
+    public boolean isInitialized() {
+        final Value<T> value = acquire();
+        return value != null && !value.isExpired();
+    }
+
+    public void reset() {
+        CURRENT.setRelease(this, null);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Value<T> acquire() {
+        return (Value<T>) CURRENT.getAcquire(this);
+    }
+
+    private T initOnce() {
+        synchronized (initLock) {
+            final Value<T> value = acquire();
+            if (value != null && !value.isExpired()) {
+                return value.value;
+            }
+            final Value<T> fresh = build();
+            CURRENT.setRelease(this, fresh);
+            return fresh.value;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private T initRacy(final Value<T> seen) {
+        final Value<T> fresh = build();
+        final Value<T> witness = (Value<T>) CURRENT.compareAndExchange(this, seen, fresh);
+        if (witness == seen || witness == null || witness.isExpired()) {
+            return fresh.value;
+        }
+        return witness.value;
+    }
+
+    private Value<T> build() {
+        final T value = supplier.get();
+        return new Value<>(value, timeToLiveNanos == 0 ? 0 : System.nanoTime() + timeToLiveNanos);
+    }
+
+    private static final class Value<T> {
+
+        final T value;
+        // 0 when the value never expires
+        final long expiresAt;
+
+        Value(final T value, final long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+
+        boolean isExpired() {
+            return expiresAt != 0 && System.nanoTime() - expiresAt >= 0;
+        }
+    }
+
+    public static void main(final String[] args) throws InterruptedException {
+        final Lazy<Heavy> heavy = Lazy.of(Heavy::new);
+        System.out.println("deferring heavy creation...");
+        final Thread[] readers = new Thread[4];
+        for (int i = 0; i < readers.length; i++) {
+            readers[i] = new Thread(() -> System.out.println(heavy.get()));
+            readers[i].start();
+        }
+        for (final Thread reader : readers) {
+            reader.join();
+        }
+
+        final int[] attempts = {0};
+        final Lazy<String> flaky = Lazy.of(() -> {
+            if (++attempts[0] < 3) {
+                throw new IllegalStateException("attempt " + attempts[0] + " failed");
+            }
+            return "ready after " + attempts[0] + " attempts";
+        });
+        for (int i = 0; i < 3; i++) {
+            try {
+                System.out.println(flaky.get());
+            } catch (IllegalStateException ex) {
+                System.out.println(ex.getMessage());
+            }
+        }
+
+        final Lazy<Long> stamp = Lazy.racy(System::nanoTime).expireAfter(Duration.ofMillis(20));
+        final long first = stamp.get();
+        System.out.println("same while fresh: " + (first == stamp.get()));
+        Thread.sleep(30);
+        System.out.println("rebuilt after expiry: " + (first != stamp.get()));
+        stamp.reset();
+        System.out.println("initialized after reset: " + stamp.isInitialized());
+    }
+}
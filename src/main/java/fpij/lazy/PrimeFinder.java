@@ -8,12 +8,10 @@
  ** */
 package fpij.lazy;
 
-import java.util.stream.IntStream;
-
 public class PrimeFinder {
 
+    // a table lookup or a Miller-Rabin test instead of trial division
     public static boolean isPrime(final int number) {
-        return number > 1 && IntStream.rangeClosed(2, (int) Math.sqrt(number))
-                .noneMatch(divisor -> number % divisor == 0);
+        return PrimeSieve.isPrime(number);
     }
 }
@@ -0,0 +1,213 @@
+package fpij.lazy;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+import java.util.stream.StreamSupport;
+
+// The primes from a starting number on, without an end. Iterators and streams
+// sieve the next window of numbers only when the primes already sieved run
+// out, so each prime costs a few bit operations and no stack. The first
+// window is sized for the primes expected - from the n ln n estimate of how
+// far apart they are - and each one after it is twice as wide, up to eight
+// segments of PrimeSieve. get(index) keeps every CHECKPOINT-th prime it has
+// passed, which lets an iterator resume from any index by sieving from the
+// checkpoint below it instead of walking from the start.
+public final class PrimeSequence implements Iterable<Long> {
+
+    private static final long MIN_WINDOW = 1L << 7;
+    private static final long MAX_WINDOW = 1L << 22;
+    private static final int CHECKPOINT = 256;
+
+    private final long first;
+    // checkpoints[k] is the prime at index k * CHECKPOINT
+    private long[] checkpoints = new long[0];
+    private int checkpointCount;
+    // the primes below sievedTo, counted
+    private long size;
+    private long sievedTo;
+
+    private PrimeSequence(final long first) {
+        this.first = first;
+        sievedTo = first;
+    }
+
+    public static PrimeSequence primes() {
+        return new PrimeSequence(2);
+    }
+
+    // the primes that are not smaller than number
+    public static PrimeSequence from(final long number) {
+        return new PrimeSequence(number);
+    }
+
+    // the index-th prime of this sequence, counting from 0
+    public long get(final int index) {
+        if (index < 0) {
+            throw new IndexOutOfBoundsException(Integer.toString(index));
+        }
+        final long checkpoint;
+        synchronized (this) {
+            while (size <= index) {
+                if (sievedTo == Long.MAX_VALUE) {
+                    throw new NoSuchElementException("no prime at index " + index);
+                }
+                final long to = end(sievedTo, window(sievedTo, index - size + 1));
+                final long[] primes = PrimeSieve.primesBetween(sievedTo, to);
+                for (long at = (CHECKPOINT - size % CHECKPOINT) % CHECKPOINT; at < primes.length; at += CHECKPOINT) {
+                    if (checkpointCount == checkpoints.length) {
+                        checkpoints = Arrays.copyOf(checkpoints, Math.max(16, checkpointCount * 2));
+                    }
+                    checkpoints[checkpointCount++] = primes[(int) at];
+                }
+                size += primes.length;
+                sievedTo = to;
+            }
+            checkpoint = checkpoints[index / CHECKPOINT];
+        }
+        return nth(checkpoint, index % CHECKPOINT);
+    }
+
+    // the skip-th prime after from, counting from 0 at from itself
+    private static long nth(final long from, final int skip) {
+        long next = from;
+        long width = window(from, skip + 1);
+        int passed = 0;
+        while (true) {
+            final long to = end(next, width);
+            final long[] primes = PrimeSieve.primesBetween(next, to);
+            if (passed + primes.length > skip) {
+                return primes[skip - passed];
+            }
+            passed += primes.length;
+            next = to;
+            width = Math.min(2 * width, MAX_WINDOW);
+        }
+    }
+
+    // wide enough for about count primes from from on: there are some
+    // n / ln n primes below n, so near x they are ln x apart
+    private static long window(final long from, final long count) {
+        final double reach = Math.max(from, 16) + count * Math.log(count + 16);
+        final double width = count * Math.log(reach) * 1.2 + 64;
+        return width >= MAX_WINDOW ? MAX_WINDOW : Math.max(MIN_WINDOW, (long) width);
+    }
+
+    private static long end(final long from, final long width) {
+        return from > Long.MAX_VALUE - width ? Long.MAX_VALUE : from + width;
+    }
+
+    @Override
+    public PrimeIterator iterator() {
+        return new PrimeIterator(0, first, MIN_WINDOW);
+    }
+
+    // starts at the index-th prime, found through get
+    public PrimeIterator iterator(final int fromIndex) {
+        return iterator(fromIndex, 0);
+    }
+
+    // the first window holds about expectedCount primes
+    public PrimeIterator iterator(final int fromIndex, final int expectedCount) {
+        final long from = fromIndex == 0 ? first : get(fromIndex);
+        return new PrimeIterator(fromIndex, from, window(from, expectedCount));
+    }
+
+    public LongStream longs() {
+        return longs(0);
+    }
+
+    public LongStream longs(final int fromIndex) {
+        return longs(fromIndex, 0);
+    }
+
+    // for a stream that is limited to about expectedCount primes
+    public LongStream longs(final int fromIndex, final int expectedCount) {
+        return StreamSupport.longStream(Spliterators.spliteratorUnknownSize(iterator(fromIndex, expectedCount),
+                Spliterator.ORDERED | Spliterator.SORTED | Spliterator.DISTINCT
+                        | Spliterator.NONNULL | Spliterator.IMMUTABLE), false);
+    }
+
+    // the primes that fit in an int
+    public IntStream ints() {
+        return ints(0);
+    }
+
+    public IntStream ints(final int fromIndex) {
+        return ints(fromIndex, 0);
+    }
+
+    public IntStream ints(final int fromIndex, final int expectedCount) {
+        return longs(fromIndex, expectedCount)
+                .takeWhile(prime -> prime <= Integer.MAX_VALUE).mapToInt(prime -> (int) prime);
+    }
+
+    // walks the primes window by window; it keeps only the current window, so
+    // a long walk does not grow the sequence
+    public static final class PrimeIterator implements PrimitiveIterator.OfLong {
+
+        private long[] window = new long[0];
+        private int position;
+        private long next;
+        private long width;
+        private long index;
+
+        PrimeIterator(final long index, final long from, final long firstWidth) {
+            this.index = index;
+            next = from;
+            width = firstWidth;
+        }
+
+        // the index in the sequence of the prime nextLong returns
+        public long index() {
+            return index;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (position == window.length) {
+                if (next == Long.MAX_VALUE) {
+                    return false;
+                }
+                final long to = end(next, width);
+                window = PrimeSieve.primesBetween(next, to);
+                position = 0;
+                next = to;
+                width = Math.min(2 * width, MAX_WINDOW);
+            }
+            return true;
+        }
+
+        @Override
+        public long nextLong() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            index++;
+            return window[position++];
+        }
+    }
+
+    public static void main(final String[] args) {
+        final PrimeSequence primes = primes();
+        System.out.println("first 10: " + Arrays.toString(primes.longs().limit(10).toArray()));
+        System.out.println("the 1,000,000th: " + primes.get(999_999));
+        System.out.println("5 from index 1,000,000: " + Arrays.toString(primes.longs(1_000_000).limit(5).toArray()));
+
+        final long start = System.nanoTime();
+        final PrimeIterator iterator = from(1_000_000_000L).iterator();
+        long last = 0;
+        while (iterator.index() < 1_000_000) {
+            last = iterator.nextLong();
+        }
+        System.out.println("1,000,000 primes after 10^9 end at " + last + " in "
+                + (System.nanoTime() - start) / 1.0e9 + " seconds");
+
+        System.out.println("int primes from 2^31 - 100: "
+                + Arrays.toString(from(Integer.MAX_VALUE - 100L).ints().toArray()));
+    }
+}
@@ -0,0 +1,340 @@
+package fpij.lazy;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.LongStream;
+
+// A segmented sieve of Eratosthenes. A segment holds only odd numbers, one bit
+// each, and is small enough to stay in cache while every base prime crosses
+// off its multiples; segments are independent, so they are sieved in parallel.
+// Base primes go up to BASE_LIMIT, which sieves exactly up to BASE_LIMIT^2
+// (about 10^15). Above that, the numbers a segment leaves standing are
+// confirmed with a deterministic Miller-Rabin test, as is isPrime for any
+// number outside the base table, so the whole positive long range works.
+public final class PrimeSieve {
+
+    // 2^18 odd numbers: 32 KB of bits
+    private static final int SEGMENT_ODDS = 1 << 18;
+    private static final int BASE_LIMIT = 1 << 25;
+
+    // bases that make Miller-Rabin exact for every 64-bit number
+    private static final long[] WITNESSES = {2, 325, 9375, 28178, 450775, 9780504, 1795265022};
+    private static final int[] SMALL_PRIMES = {3, 5, 7, 11, 13, 17, 19, 23, 29, 31, 37};
+
+    private static final ThreadLocal<long[]> SEGMENT = ThreadLocal.withInitial(() -> new long[SEGMENT_ODDS / 64]);
+
+    private static volatile BasePrimes base = new BasePrimes(1 << 16);
+
+    private PrimeSieve() {
+    }
+
+    public static boolean isPrime(final long number) {
+        if (number < 2) {
+            return false;
+        }
+        if ((number & 1) == 0) {
+            return number == 2;
+        }
+        for (final int prime : SMALL_PRIMES) {
+            if (number % prime == 0) {
+                return number == prime;
+            }
+        }
+        final BasePrimes known = base;
+        if (number <= known.limit) {
+            return Arrays.binarySearch(known.primes, (int) number) >= 0;
+        }
+        return millerRabin(number);
+    }
+
+    // the number of primes in [from, to)
+    public static long countPrimes(final long from, final long to) {
+        final long start = firstOdd(from);
+        long count = from <= 2 && to > 2 ? 1 : 0;
+        if (to <= start) {
+            return count;
+        }
+        final long odds = ((to - 1 - start) >>> 1) + 1;
+        final long segments = (odds + SEGMENT_ODDS - 1) / SEGMENT_ODDS;
+        final BasePrimes primes = basePrimesFor(start + 2 * (odds - 1));
+        count += LongStream.range(0, segments).parallel()
+                .map(segment -> {
+                    final long[] words = SEGMENT.get();
+                    final int size = (int) Math.min(SEGMENT_ODDS, odds - segment * SEGMENT_ODDS);
+                    sieve(words, start + 2 * segment * SEGMENT_ODDS, size, primes);
+                    return countClear(words, size);
+                })
+                .sum();
+        return count;
+    }
+
+    // the primes in [from, to), in increasing order
+    public static long[] primesBetween(final long from, final long to) {
+        final long start = firstOdd(from);
+        final boolean withTwo = from <= 2 && to > 2;
+        if (to <= start) {
+            return withTwo ? new long[] {2} : new long[0];
+        }
+        final long odds = ((to - 1 - start) >>> 1) + 1;
+        final BasePrimes primes = basePrimesFor(start + 2 * (odds - 1));
+        final long[][] parts = LongStream.range(0, (odds + SEGMENT_ODDS - 1) / SEGMENT_ODDS).parallel()
+                .mapToObj(segment -> {
+                    final long[] words = SEGMENT.get();
+                    final long segmentStart = start + 2 * segment * SEGMENT_ODDS;
+                    final int size = (int) Math.min(SEGMENT_ODDS, odds - segment * SEGMENT_ODDS);
+                    sieve(words, segmentStart, size, primes);
+                    return collectClear(words, size, segmentStart);
+                })
+                .toArray(long[][]::new);
+        int total = withTwo ? 1 : 0;
+        for (final long[] part : parts) {
+            total += part.length;
+        }
+        final long[] result = new long[total];
+        int found = 0;
+        if (withTwo) {
+            result[found++] = 2;
+        }
+        for (final long[] part : parts) {
+            System.arraycopy(part, 0, result, found, part.length);
+            found += part.length;
+        }
+        return result;
+    }
+
+    // the first count primes that are not smaller than from, fewer only at the
+    // very end of the long range
+    public static long[] primesFrom(final long from, final int count) {
+        final long[] result = new long[count];
+        // one segment for every thread of the pool
+        final long window = 2L * SEGMENT_ODDS * ForkJoinPool.getCommonPoolParallelism();
+        int found = 0;
+        long next = from;
+        while (found < count && next < Long.MAX_VALUE) {
+            final long to = next > Long.MAX_VALUE - window ? Long.MAX_VALUE : next + window;
+            final long[] part = primesBetween(next, to);
+            final int take = Math.min(part.length, count - found);
+            System.arraycopy(part, 0, result, found, take);
+            found += take;
+            next = to;
+        }
+        return found == count ? result : Arrays.copyOf(result, found);
+    }
+
+    private static long firstOdd(final long from) {
+        return from <= 3 ? 3 : from | 1;
+    }
+
+    private static long isqrt(final long number) {
+        long root = (long) Math.sqrt((double) number);
+        // divisions rather than squares, which overflow near Long.MAX_VALUE
+        while (root > 0 && root > number / root) {
+            root--;
+        }
+        while (root + 1 <= number / (root + 1)) {
+            root++;
+        }
+        return root;
+    }
+
+    private static BasePrimes basePrimesFor(final long last) {
+        final long needed = Math.min(isqrt(last), BASE_LIMIT);
+        BasePrimes known = base;
+        if (known.limit < needed) {
+            synchronized (PrimeSieve.class) {
+                known = base;
+                if (known.limit < needed) {
+                    known = new BasePrimes((int) Math.min(BASE_LIMIT, Math.max(needed, 2L * known.limit)));
+                    base = known;
+                }
+            }
+        }
+        return known;
+    }
+
+    // sets the bit of every composite among the odd numbers start, start + 2, ...
+    // (size of them); start is odd
+    private static void sieve(final long[] words, final long start, final int size, final BasePrimes primes) {
+        Arrays.fill(words, 0, (size + 63) >>> 6, 0L);
+        final long last = start + 2L * (size - 1);
+        for (final int prime : primes.primes) {
+            final long square = (long) prime * prime;
+            if (square > last) {
+                break;
+            }
+            long first = square;
+            if (first < start) {
+                final long remainder = start % prime;
+                first = remainder == 0 ? start : start + (prime - remainder);
+                if ((first & 1) == 0) {
+                    first += prime;
+                }
+            }
+            for (long index = (first - start) >>> 1; index < size; index += prime) {
+                words[(int) (index >>> 6)] |= 1L << index;
+            }
+        }
+        if ((long) primes.limit * primes.limit < last) {
+            for (int index = 0; index < size; index++) {
+                if ((words[index >>> 6] & (1L << index)) == 0 && !millerRabin(start + 2L * index)) {
+                    words[index >>> 6] |= 1L << index;
+                }
+            }
+        }
+    }
+
+    private static long countClear(final long[] words, final int size) {
+        long count = 0;
+        final int full = size >>> 6;
+        for (int i = 0; i < full; i++) {
+            count += Long.bitCount(~words[i]);
+        }
+        if ((size & 63) != 0) {
+            count += Long.bitCount(~words[full] & ((1L << size) - 1));
+        }
+        return count;
+    }
+
+    private static long[] collectClear(final long[] words, final int size, final long start) {
+        final long[] primes = new long[(int) countClear(words, size)];
+        int found = 0;
+        for (int i = 0; i < (size + 63) >>> 6; i++) {
+            long clear = ~words[i];
+            if (i == size >>> 6) {
+                clear &= (1L << size) - 1;
+            }
+            while (clear != 0) {
+                primes[found++] = start + 2L * ((i << 6) + Long.numberOfTrailingZeros(clear));
+                clear &= clear - 1;
+            }
+        }
+        return primes;
+    }
+
+    // for odd numbers above 2
+    private static boolean millerRabin(final long number) {
+        final Montgomery mont = new Montgomery(number);
+        final int shift = Long.numberOfTrailingZeros(number - 1);
+        final long odd = (number - 1) >>> shift;
+        final long minusOne = number - mont.one;
+        for (final long witness : WITNESSES) {
+            final long a = witness % number;
+            if (a == 0) {
+                continue;
+            }
+            long x = mont.pow(mont.toMontgomery(a), odd);
+            if (x == mont.one || x == minusOne) {
+                continue;
+            }
+            boolean composite = true;
+            for (int i = 1; i < shift && composite; i++) {
+                x = mont.multiply(x, x);
+                composite = x != minusOne;
+            }
+            if (composite) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // odd primes up to limit, found with a plain odd-only sieve
+    private static final class BasePrimes {
+
+        final int limit;
+        final int[] primes;
+
+        BasePrimes(final int limit) {
+            this.limit = limit;
+            final int odds = (limit - 1) / 2;
+            // bit i stands for 2i + 3
+            final long[] composite = new long[(odds + 63) >>> 6];
+            int count = 0;
+            for (int i = 0; i < odds; i++) {
+                if ((composite[i >>> 6] & (1L << i)) == 0) {
+                    count++;
+                    final long prime = 2L * i + 3;
+                    for (long j = (prime * prime - 3) / 2; j < odds; j += prime) {
+                        composite[(int) (j >>> 6)] |= 1L << j;
+                    }
+                }
+            }
+            primes = new int[count];
+            int found = 0;
+            for (int i = 0; i < odds; i++) {
+                if ((composite[i >>> 6] & (1L << i)) == 0) {
+                    primes[found++] = 2 * i + 3;
+                }
+            }
+        }
+    }
+
+    // arithmetic modulo an odd number below 2^63 without division: values are
+    // kept as x * 2^64 mod n, and a product is reduced with two multiplyHigh
+    private static final class Montgomery {
+
+        final long modulus;
+        final long negatedInverse;
+        final long one;
+        final long rSquared;
+
+        Montgomery(final long modulus) {
+            this.modulus = modulus;
+            // Newton's iteration doubles the correct low bits of 1 / modulus
+            long inverse = modulus;
+            for (int i = 0; i < 5; i++) {
+                inverse *= 2 - modulus * inverse;
+            }
+            negatedInverse = -inverse;
+            one = Long.remainderUnsigned(-modulus, modulus);
+            long square = one;
+            for (int i = 0; i < 64; i++) {
+                square = addModulo(square, square);
+            }
+            rSquared = square;
+        }
+
+        private long addModulo(final long a, final long b) {
+            final long sum = a + b;
+            return Long.compareUnsigned(sum, modulus) >= 0 ? sum - modulus : sum;
+        }
+
+        long toMontgomery(final long value) {
+            return multiply(value, rSquared);
+        }
+
+        long multiply(final long a, final long b) {
+            final long high = Math.multiplyHigh(a, b);
+            final long low = a * b;
+            final long m = low * negatedInverse;
+            // unsigned high word of m * modulus; modulus itself is positive
+            final long mHigh = Math.multiplyHigh(m, modulus) + ((m >> 63) & modulus);
+            final long result = high + mHigh + (low != 0 ? 1 : 0);
+            return Long.compareUnsigned(result, modulus) >= 0 ? result - modulus : result;
+        }
+
+        long pow(final long base, long exponent) {
+            long result = one;
+            long square = base;
+            while (exponent != 0) {
+                if ((exponent & 1) != 0) {
+                    result = multiply(result, square);
+                }
+                square = multiply(square, square);
+                exponent >>>= 1;
+            }
+            return result;
+        }
+    }
+
+    public static void main(final String[] args) {
+        System.out.println("primes below 100,000: " + countPrimes(0, 100_000));
+        System.out.println("primes below 100,000,000: " + countPrimes(0, 100_000_000));
+        System.out.println("10 primes from 1: " + Arrays.toString(primesFrom(1, 10)));
+        System.out.println("3 primes from 10^18: " + Arrays.toString(primesFrom(1_000_000_000_000_000_000L, 3)));
+        System.out.println("primes in [10^18, 10^18 + 10^6): "
+                + countPrimes(1_000_000_000_000_000_000L, 1_000_000_000_001_000_000L));
+        System.out.println("2^61 - 1 is prime: " + isPrime((1L << 61) - 1));
+        System.out.println("largest long prime: " + Arrays.toString(primesFrom(Long.MAX_VALUE - 100, 5)));
+    }
+}
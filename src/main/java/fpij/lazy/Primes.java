@@ -8,24 +8,17 @@
  ** */
 package fpij.lazy;
 
-import static fpij.lazy.PrimeFinder.isPrime;
 import java.util.List;
-import java.util.stream.Stream;
 import java.util.stream.Collectors;
 
 public class Primes {
 
-    private static int primeAfter(final int number) {
-        if (isPrime(number + 1)) {
-            return number + 1;
-        } else {
-            return primeAfter(number + 1);
-        }
-    }
-
+    // the sequence sieves ahead in windows sized for count primes, so long
+    // prime gaps cost no stack
     public static List<Integer> primes(final int fromNumber, final int count) {
-        return Stream.iterate(primeAfter(fromNumber - 1), Primes::primeAfter)
+        return PrimeSequence.from(fromNumber).ints(0, count)
                 .limit(count)
+                .boxed()
                 .collect(Collectors.<Integer>toList());
     }
     //...
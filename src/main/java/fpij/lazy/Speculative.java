@@ -0,0 +1,155 @@
+package fpij.lazy;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+// Lazy arguments evaluated speculatively: instead of calling the suppliers one
+// after another, all of them start at once and the combinator answers as soon
+// as the result is known - the first false for and, the first true for or -
+// interrupting the ones still running. A condition that fails only matters if
+// the others cannot decide the result. The timed versions give up after the
+// budget and return an empty Optional.
+// Every supplier gets its own thread from TaskExecutors.
+public final class Speculative {
+
+    private static final ExecutorService EXECUTOR = TaskExecutors.newThreadPerTaskExecutor("speculative");
+
+    private Speculative() {
+    }
+
+    @SafeVarargs
+    @SuppressWarnings("varargs")
+    public static boolean and(final Supplier<Boolean>... conditions) {
+        return decide(false, null, Arrays.asList(conditions)).get();
+    }
+
+    @SafeVarargs
+    @SuppressWarnings("varargs")
+    public static boolean or(final Supplier<Boolean>... conditions) {
+        return decide(true, null, Arrays.asList(conditions)).get();
+    }
+
+    @SafeVarargs
+    @SuppressWarnings("varargs")
+    public static Optional<Boolean> and(final Duration budget, final Supplier<Boolean>... conditions) {
+        return decide(false, budget, Arrays.asList(conditions));
+    }
+
+    @SafeVarargs
+    @SuppressWarnings("varargs")
+    public static Optional<Boolean> or(final Duration budget, final Supplier<Boolean>... conditions) {
+        return decide(true, budget, Arrays.asList(conditions));
+    }
+
+    // starts both branches with the condition and drops the one not taken
+    public static <T> T ifThenElse(final Supplier<Boolean> condition,
+            final Supplier<? extends T> whenTrue, final Supplier<? extends T> whenFalse) {
+        final Future<T> yes = EXECUTOR.submit(whenTrue::get);
+        final Future<T> no = EXECUTOR.submit(whenFalse::get);
+        try {
+            final boolean taken = condition.get();
+            (taken ? no : yes).cancel(true);
+            return join(taken ? yes : no);
+        } finally {
+            yes.cancel(true);
+            no.cancel(true);
+        }
+    }
+
+    // decisive is the value that settles the result on its own: false for and,
+    // true for or
+    private static Optional<Boolean> decide(final boolean decisive, final Duration budget,
+            final List<Supplier<Boolean>> conditions) {
+        final ExecutorCompletionService<Boolean> completion = new ExecutorCompletionService<>(EXECUTOR);
+        final List<Future<Boolean>> running = new ArrayList<>(conditions.size());
+        for (final Supplier<Boolean> condition : conditions) {
+            running.add(completion.submit(condition::get));
+        }
+        final long deadline = budget == null ? 0 : System.nanoTime() + budget.toNanos();
+        RuntimeException failure = null;
+        try {
+            for (int i = 0; i < running.size(); i++) {
+                final Future<Boolean> done = budget == null
+                        ? completion.take()
+                        : completion.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                if (done == null) {
+                    return Optional.empty();
+                }
+                try {
+                    if (join(done) == decisive) {
+                        return Optional.of(decisive);
+                    }
+                } catch (RuntimeException ex) {
+                    if (failure == null) {
+                        failure = ex;
+                    }
+                }
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(ex);
+        } finally {
+            for (final Future<Boolean> future : running) {
+                future.cancel(true);
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        return Optional.of(!decisive);
+    }
+
+    private static <T> T join(final Future<T> future) {
+        try {
+            return future.get();
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ex.getCause();
+            }
+            throw new RuntimeException(ex.getCause());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(ex);
+        }
+    }
+
+    private static Supplier<Boolean> after(final int millis, final boolean result) {
+        return () -> {
+            try {
+                Thread.sleep(millis);
+            } catch (InterruptedException ex) {
+                throw new RuntimeException(ex);
+            }
+            return result;
+        };
+    }
+
+    public static void main(final String[] args) {
+        long start = System.nanoTime();
+        System.out.println("and: " + and(after(300, true), after(100, false), after(2000, true))
+                + " in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+
+        start = System.nanoTime();
+        System.out.println("or: " + or(after(300, false), after(200, false), after(100, false))
+                + " in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+
+        start = System.nanoTime();
+        System.out.println("and within 500 ms: " + and(Duration.ofMillis(500), after(100, true), after(2000, true))
+                + " in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+
+        System.out.println("or despite a failure: " + or(() -> {
+            throw new IllegalStateException("unreachable service");
+        }, after(100, true)));
+
+        System.out.println(ifThenElse(after(200, true), () -> "cheap branch", () -> "other branch"));
+    }
+}
@@ -0,0 +1,45 @@
+package fpij.lazy;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+// Executors for tasks that mostly wait - on a sleep, a lock or the network.
+// Where the runtime has virtual threads every task gets one of its own; the
+// build targets Java 11, so they are looked up by reflection, and without
+// them the tasks run on daemon platform threads.
+public final class TaskExecutors {
+
+    private TaskExecutors() {
+    }
+
+    // a thread per task; without virtual threads, a cached pool that starts
+    // as many platform threads as there are tasks waiting at the same time
+    public static ExecutorService newThreadPerTaskExecutor(final String name) {
+        final ExecutorService virtual = newVirtualThreadPerTaskExecutor();
+        return virtual != null ? virtual : Executors.newCachedThreadPool(daemonThreads(name));
+    }
+
+    // a thread per task; without virtual threads, at most maxThreads platform
+    // threads, and the other tasks queue up for them
+    public static ExecutorService newBoundedExecutor(final String name, final int maxThreads) {
+        final ExecutorService virtual = newVirtualThreadPerTaskExecutor();
+        return virtual != null ? virtual : Executors.newFixedThreadPool(maxThreads, daemonThreads(name));
+    }
+
+    private static ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException ex) {
+            return null;
+        }
+    }
+
+    private static ThreadFactory daemonThreads(final String name) {
+        return task -> {
+            final Thread thread = new Thread(task, name);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
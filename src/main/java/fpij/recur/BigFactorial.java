@@ -35,12 +35,34 @@ public class BigFactorial {
         }
     }
 
+    private static class FactorialFrame extends TailCalls.Bounce<BigInteger> {
+
+        private BigInteger factorial = BigInteger.ONE;
+        private BigInteger number;
+
+        FactorialFrame(final BigInteger number) {
+            this.number = number;
+        }
+
+        @Override
+        protected TailCall<BigInteger> step() {
+            if (number.equals(BigInteger.ONE)) {
+                return finish(factorial);
+            }
+            factorial = multiply(factorial, number);
+            number = decrement(number);
+            return bounce();
+        }
+    }
+
     public static BigInteger factorial(final BigInteger number) {
-        return factorialTailRec(BigInteger.ONE, number).invoke();
+        return new FactorialFrame(number).invoke();
     }
 
     public static void main(final String[] args) {
         System.out.println(factorial(FIVE));
         System.out.println(String.format("%.10s...", factorial(TWENTYK)));
+        // the same result from a fork/join product tree, see ParallelFactorial
+        System.out.println(String.format("%.10s...", ParallelFactorial.factorial(TWENTYK.intValueExact())));
     }
 }
@@ -29,8 +29,28 @@ public class Factorial {
         }
     }
 
+    private static class FactorialFrame extends TailCalls.Bounce<Integer> {
+
+        private int factorial = 1;
+        private int number;
+
+        FactorialFrame(final int number) {
+            this.number = number;
+        }
+
+        @Override
+        protected TailCall<Integer> step() {
+            if (number == 1) {
+                return finish(factorial);
+            }
+            factorial *= number;
+            number--;
+            return bounce();
+        }
+    }
+
     public static int factorial(final int number) {
-        return factorialTailRec(1, number).invoke();
+        return new FactorialFrame(number).invoke();
     }
 
     public static void main(final String[] args) {
@@ -0,0 +1,168 @@
+package fpij.recur;
+
+import java.util.Arrays;
+import java.util.function.IntUnaryOperator;
+
+// Memoizes a recursive int -> int function without boxing.
+// Inputs in [0, size) live in a dense int[] with a bitmap of the inputs already
+// computed; any other input goes to an open-addressing int -> int table that
+// is created on first use. sparse() uses only the open-addressing table.
+// Not thread-safe: use one memoizer per thread or per call.
+public final class IntMemoizer implements IntUnaryOperator {
+
+    @FunctionalInterface
+    public interface Body {
+        int apply(IntUnaryOperator self, int input);
+    }
+
+    private final Body body;
+    private final int[] dense;
+    private final long[] known;
+    private IntIntTable sparse;
+
+    private IntMemoizer(final Body body, final int size) {
+        this.body = body;
+        dense = new int[size];
+        known = new long[(size + 63) >>> 6];
+    }
+
+    public static IntMemoizer dense(final int size, final Body body) {
+        return new IntMemoizer(body, size);
+    }
+
+    public static IntMemoizer sparse(final Body body) {
+        return new IntMemoizer(body, 0);
+    }
+
+    public static int callMemoized(final Body body, final int input) {
+        return dense(Math.max(input + 1, 0), body).applyAsInt(input);
+    }
+
+    @Override
+    public int applyAsInt(final int input) {
+        if (input >= 0 && input < dense.length) {
+            if ((known[input >>> 6] & (1L << input)) != 0) {
+                return dense[input];
+            }
+            final int value = body.apply(this, input);
+            dense[input] = value;
+            known[input >>> 6] |= 1L << input;
+            return value;
+        }
+        if (sparse == null) {
+            sparse = new IntIntTable();
+        } else {
+            final int slot = sparse.find(input);
+            if (slot >= 0) {
+                return sparse.values[slot];
+            }
+        }
+        // no slot is held across the body: nested calls may grow the table
+        final int value = body.apply(this, input);
+        sparse.put(input, value);
+        return value;
+    }
+
+    // computes the inputs from..to in increasing order, so a body that only
+    // recurses on smaller inputs never nests more than one call deep
+    public IntMemoizer fillRange(final int from, final int to) {
+        for (int input = from; input <= to; input++) {
+            applyAsInt(input);
+        }
+        return this;
+    }
+
+    static final class IntIntTable {
+
+        private static final int FREE = Integer.MIN_VALUE;
+
+        private int[] keys = newKeys(16);
+        int[] values = new int[17];
+        private int size;
+        private boolean hasFreeKey;
+
+        private static int[] newKeys(final int capacity) {
+            final int[] keys = new int[capacity];
+            Arrays.fill(keys, FREE);
+            return keys;
+        }
+
+        private static int home(final int key, final int mask) {
+            final int h = key * 0x9E3779B9;
+            return (h ^ (h >>> 16)) & mask;
+        }
+
+        // the slot holding key, or -1; the key FREE cannot be stored in keys,
+        // so its value sits in the extra last slot of values
+        int find(final int key) {
+            if (key == FREE) {
+                return hasFreeKey ? keys.length : -1;
+            }
+            final int mask = keys.length - 1;
+            for (int slot = home(key, mask); ; slot = (slot + 1) & mask) {
+                if (keys[slot] == key) {
+                    return slot;
+                }
+                if (keys[slot] == FREE) {
+                    return -1;
+                }
+            }
+        }
+
+        void put(final int key, final int value) {
+            if (key == FREE) {
+                hasFreeKey = true;
+                values[keys.length] = value;
+                return;
+            }
+            if ((size + 1) * 2 > keys.length) {
+                grow();
+            }
+            final int mask = keys.length - 1;
+            int slot = home(key, mask);
+            while (keys[slot] != FREE && keys[slot] != key) {
+                slot = (slot + 1) & mask;
+            }
+            if (keys[slot] == FREE) {
+                keys[slot] = key;
+                size++;
+            }
+            values[slot] = value;
+        }
+
+        private void grow() {
+            final int[] oldKeys = keys;
+            final int[] oldValues = values;
+            keys = newKeys(oldKeys.length * 2);
+            values = new int[oldKeys.length * 2 + 1];
+            values[keys.length] = oldValues[oldKeys.length];
+            final int mask = keys.length - 1;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != FREE) {
+                    int slot = home(oldKeys[i], mask);
+                    while (keys[slot] != FREE) {
+                        slot = (slot + 1) & mask;
+                    }
+                    keys[slot] = oldKeys[i];
+                    values[slot] = oldValues[i];
+                }
+            }
+        }
+    }
+
+    public static void main(final String[] args) {
+        final Body fibonacci = (self, n) -> n < 2 ? n : self.applyAsInt(n - 1) + self.applyAsInt(n - 2);
+        System.out.println(callMemoized(fibonacci, 40));
+
+        // Collatz steps wander far above the starting point, so a sparse table fits
+        final IntMemoizer collatz = sparse((self, n) -> n == 1 ? 0
+                : 1 + self.applyAsInt(n % 2 == 0 ? n / 2 : 3 * n + 1));
+        int longest = 1;
+        for (int n = 1; n < 100_000; n++) {
+            if (collatz.applyAsInt(n) > collatz.applyAsInt(longest)) {
+                longest = n;
+            }
+        }
+        System.out.println(longest + " takes " + collatz.applyAsInt(longest) + " steps");
+    }
+}
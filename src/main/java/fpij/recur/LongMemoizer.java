@@ -0,0 +1,163 @@
+package fpij.recur;
+
+import java.util.Arrays;
+import java.util.function.LongUnaryOperator;
+
+// The long -> long counterpart of IntMemoizer: inputs in [0, size) live in a
+// dense long[], any other input in an open-addressing long -> long table.
+// Not thread-safe: use one memoizer per thread or per call.
+public final class LongMemoizer implements LongUnaryOperator {
+
+    @FunctionalInterface
+    public interface Body {
+        long apply(LongUnaryOperator self, long input);
+    }
+
+    private final Body body;
+    private final long[] dense;
+    private final long[] known;
+    private LongLongTable sparse;
+
+    private LongMemoizer(final Body body, final int size) {
+        this.body = body;
+        dense = new long[size];
+        known = new long[(size + 63) >>> 6];
+    }
+
+    public static LongMemoizer dense(final int size, final Body body) {
+        return new LongMemoizer(body, size);
+    }
+
+    public static LongMemoizer sparse(final Body body) {
+        return new LongMemoizer(body, 0);
+    }
+
+    public static long callMemoized(final Body body, final long input) {
+        final int size = input >= 0 && input < Integer.MAX_VALUE - 8 ? (int) input + 1 : 0;
+        return dense(size, body).applyAsLong(input);
+    }
+
+    @Override
+    public long applyAsLong(final long input) {
+        if (input >= 0 && input < dense.length) {
+            final int index = (int) input;
+            if ((known[index >>> 6] & (1L << index)) != 0) {
+                return dense[index];
+            }
+            final long value = body.apply(this, input);
+            dense[index] = value;
+            known[index >>> 6] |= 1L << index;
+            return value;
+        }
+        if (sparse == null) {
+            sparse = new LongLongTable();
+        } else {
+            final int slot = sparse.find(input);
+            if (slot >= 0) {
+                return sparse.values[slot];
+            }
+        }
+        // no slot is held across the body: nested calls may grow the table
+        final long value = body.apply(this, input);
+        sparse.put(input, value);
+        return value;
+    }
+
+    // computes the inputs from..to in increasing order, so a body that only
+    // recurses on smaller inputs never nests more than one call deep
+    public LongMemoizer fillRange(final long from, final long to) {
+        for (long input = from; input <= to; input++) {
+            applyAsLong(input);
+        }
+        return this;
+    }
+
+    static final class LongLongTable {
+
+        private static final long FREE = Long.MIN_VALUE;
+
+        private long[] keys = newKeys(16);
+        long[] values = new long[17];
+        private int size;
+        private boolean hasFreeKey;
+
+        private static long[] newKeys(final int capacity) {
+            final long[] keys = new long[capacity];
+            Arrays.fill(keys, FREE);
+            return keys;
+        }
+
+        private static int home(final long key, final int mask) {
+            final long h = key * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32)) & mask;
+        }
+
+        // the slot holding key, or -1; the key FREE cannot be stored in keys,
+        // so its value sits in the extra last slot of values
+        int find(final long key) {
+            if (key == FREE) {
+                return hasFreeKey ? keys.length : -1;
+            }
+            final int mask = keys.length - 1;
+            for (int slot = home(key, mask); ; slot = (slot + 1) & mask) {
+                if (keys[slot] == key) {
+                    return slot;
+                }
+                if (keys[slot] == FREE) {
+                    return -1;
+                }
+            }
+        }
+
+        void put(final long key, final long value) {
+            if (key == FREE) {
+                hasFreeKey = true;
+                values[keys.length] = value;
+                return;
+            }
+            if ((size + 1) * 2 > keys.length) {
+                grow();
+            }
+            final int mask = keys.length - 1;
+            int slot = home(key, mask);
+            while (keys[slot] != FREE && keys[slot] != key) {
+                slot = (slot + 1) & mask;
+            }
+            if (keys[slot] == FREE) {
+                keys[slot] = key;
+                size++;
+            }
+            values[slot] = value;
+        }
+
+        private void grow() {
+            final long[] oldKeys = keys;
+            final long[] oldValues = values;
+            keys = newKeys(oldKeys.length * 2);
+            values = new long[oldKeys.length * 2 + 1];
+            values[keys.length] = oldValues[oldKeys.length];
+            final int mask = keys.length - 1;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != FREE) {
+                    int slot = home(oldKeys[i], mask);
+                    while (keys[slot] != FREE) {
+                        slot = (slot + 1) & mask;
+                    }
+                    keys[slot] = oldKeys[i];
+                    values[slot] = oldValues[i];
+                }
+            }
+        }
+    }
+
+    public static void main(final String[] args) {
+        final Body fibonacci = (self, n) -> n < 2 ? n : self.applyAsLong(n - 1) + self.applyAsLong(n - 2);
+        System.out.println(callMemoized(fibonacci, 90));
+
+        // an input in the billions reaches only a few hundred distinct smaller
+        // inputs, far too spread out for a dense table
+        final LongMemoizer halving = sparse((self, n) -> n < 2 ? n
+                : self.applyAsLong(n / 2) + self.applyAsLong(n / 3) + 1);
+        System.out.println(halving.applyAsLong(5_000_000_000L));
+    }
+}
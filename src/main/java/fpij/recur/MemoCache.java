@@ -0,0 +1,253 @@
+package fpij.recur;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.ToLongBiFunction;
+
+// A memoization cache that can be shared across threads and calls.
+// Loaders run outside any lock, so they may call get() again for other keys
+// (recursive population); a key being loaded by another thread is waited for
+// only by a thread that is not itself in the middle of a load, otherwise it is
+// computed again, so two recursions can never wait on each other.
+// Eviction is LRU by entry count or total weight; entries can expire a fixed
+// time after they were written.
+public class MemoCache<K, V> {
+
+    private final long maximumSize;
+    private final long maximumWeight;
+    private final ToLongBiFunction<? super K, ? super V> weigher;
+    private final long expireAfterWriteNanos;
+
+    private final LinkedHashMap<K, Entry<V>> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalWeight;
+    private final ConcurrentHashMap<K, Load<V>> loading = new ConcurrentHashMap<>();
+    private final ThreadLocal<Deque<K>> loadsInProgress = ThreadLocal.withInitial(ArrayDeque::new);
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+
+    private MemoCache(final Builder<K, V> builder) {
+        maximumSize = builder.maximumSize;
+        maximumWeight = builder.maximumWeight;
+        weigher = builder.weigher;
+        expireAfterWriteNanos = builder.expireAfterWrite == null ? 0 : builder.expireAfterWrite.toNanos();
+    }
+
+    public static <K, V> Builder<K, V> builder() {
+        return new Builder<>();
+    }
+
+    public V getIfPresent(final K key) {
+        synchronized (entries) {
+            final Entry<V> entry = entries.get(key);
+            if (entry == null) {
+                return null;
+            }
+            if (entry.isExpired()) {
+                remove(key, entry);
+                expirations.increment();
+                return null;
+            }
+            return entry.value;
+        }
+    }
+
+    public V get(final K key, final Function<? super K, ? extends V> loader) {
+        synchronized (entries) {
+            final Entry<V> entry = entries.get(key);
+            if (entry != null) {
+                if (!entry.isExpired()) {
+                    hits.increment();
+                    return entry.value;
+                }
+                remove(key, entry);
+                expirations.increment();
+            }
+        }
+        misses.increment();
+
+        final Deque<K> inProgress = loadsInProgress.get();
+        final Load<V> mine = new Load<>(Thread.currentThread());
+        final Load<V> other = loading.putIfAbsent(key, mine);
+        if (other != null) {
+            if (other.owner == Thread.currentThread()) {
+                throw new IllegalStateException("recursive load of " + key + " while loading " + inProgress);
+            }
+            if (inProgress.isEmpty() || other.future.isDone()) {
+                return join(other.future);
+            }
+            return load(key, loader, inProgress, null);
+        }
+        return load(key, loader, inProgress, mine);
+    }
+
+    private V load(final K key, final Function<? super K, ? extends V> loader,
+            final Deque<K> inProgress, final Load<V> mine) {
+        inProgress.push(key);
+        try {
+            final V value = loader.apply(key);
+            put(key, value);
+            if (mine != null) {
+                mine.future.complete(value);
+            }
+            return value;
+        } catch (RuntimeException | Error ex) {
+            if (mine != null) {
+                mine.future.completeExceptionally(ex);
+            }
+            throw ex;
+        } finally {
+            inProgress.pop();
+            if (mine != null) {
+                loading.remove(key, mine);
+            }
+        }
+    }
+
+    private static <V> V join(final CompletableFuture<V> future) {
+        try {
+            return future.join();
+        } catch (CompletionException ex) {
+            if (ex.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ex.getCause();
+            }
+            if (ex.getCause() instanceof Error) {
+                throw (Error) ex.getCause();
+            }
+            throw ex;
+        }
+    }
+
+    public void put(final K key, final V value) {
+        final long weight = weigher == null ? 1 : weigher.applyAsLong(key, value);
+        final long expiresAt = expireAfterWriteNanos == 0 ? 0 : System.nanoTime() + expireAfterWriteNanos;
+        synchronized (entries) {
+            final Entry<V> previous = entries.put(key, new Entry<>(value, weight, expiresAt));
+            if (previous != null) {
+                totalWeight -= previous.weight;
+            }
+            totalWeight += weight;
+            final Iterator<Map.Entry<K, Entry<V>>> eldest = entries.entrySet().iterator();
+            while (eldest.hasNext() && (entries.size() > maximumSize || totalWeight > maximumWeight)) {
+                final Entry<V> evicted = eldest.next().getValue();
+                eldest.remove();
+                totalWeight -= evicted.weight;
+                evictions.increment();
+            }
+        }
+    }
+
+    public void invalidateAll() {
+        synchronized (entries) {
+            entries.clear();
+            totalWeight = 0;
+        }
+    }
+
+    public long size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public Stats stats() {
+        return new Stats(hits.sum(), misses.sum(), evictions.sum(), expirations.sum());
+    }
+
+    private void remove(final K key, final Entry<V> entry) {
+        entries.remove(key);
+        totalWeight -= entry.weight;
+    }
+
+    private static final class Entry<V> {
+
+        final V value;
+        final long weight;
+        final long expiresAt;
+
+        Entry(final V value, final long weight, final long expiresAt) {
+            this.value = value;
+            this.weight = weight;
+            this.expiresAt = expiresAt;
+        }
+
+        boolean isExpired() {
+            return expiresAt != 0 && System.nanoTime() - expiresAt >= 0;
+        }
+    }
+
+    private static final class Load<V> {
+
+        final Thread owner;
+        final CompletableFuture<V> future = new CompletableFuture<>();
+
+        Load(final Thread owner) {
+            this.owner = owner;
+        }
+    }
+
+    public static final class Stats {
+
+        public final long hitCount;
+        public final long missCount;
+        public final long evictionCount;
+        public final long expirationCount;
+
+        Stats(final long hitCount, final long missCount, final long evictionCount, final long expirationCount) {
+            this.hitCount = hitCount;
+            this.missCount = missCount;
+            this.evictionCount = evictionCount;
+            this.expirationCount = expirationCount;
+        }
+
+        public double hitRate() {
+            final long requests = hitCount + missCount;
+            return requests == 0 ? 1.0 : (double) hitCount / requests;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("hits: %d misses: %d (hit rate %.2f) evictions: %d expirations: %d",
+                    hitCount, missCount, hitRate(), evictionCount, expirationCount);
+        }
+    }
+
+    public static final class Builder<K, V> {
+
+        private long maximumSize = Long.MAX_VALUE;
+        private long maximumWeight = Long.MAX_VALUE;
+        private ToLongBiFunction<? super K, ? super V> weigher;
+        private Duration expireAfterWrite;
+
+        public Builder<K, V> maximumSize(final long size) {
+            maximumSize = size;
+            return this;
+        }
+
+        public Builder<K, V> maximumWeight(final long weight, final ToLongBiFunction<? super K, ? super V> entryWeigher) {
+            maximumWeight = weight;
+            weigher = entryWeigher;
+            return this;
+        }
+
+        public Builder<K, V> expireAfterWrite(final Duration duration) {
+            expireAfterWrite = duration;
+            return this;
+        }
+
+        public MemoCache<K, V> build() {
+            return new MemoCache<>(this);
+        }
+    }
+}
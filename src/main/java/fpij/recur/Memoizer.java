@@ -8,20 +8,24 @@
  ** */
 package fpij.recur;
 
-import java.util.Map;
-import java.util.HashMap;
 import java.util.function.Function;
 import java.util.function.BiFunction;
 
 public class Memoizer {
 
     public static <T, R> R callMemoized(final BiFunction<Function<T, R>, T, R> function, final T input) {
-        Function<T, R> memoized = new Function<T, R>() {
-            private final Map<T, R> store = new HashMap<>();
+        return callMemoized(function, input, MemoCache.<T, R>builder().build());
+    }
 
+    // the store is a MemoCache rather than a HashMap: a recursive
+    // computeIfAbsent on a HashMap throws ConcurrentModificationException,
+    // and a shared cache keeps its results across calls and threads
+    public static <T, R> R callMemoized(final BiFunction<Function<T, R>, T, R> function, final T input,
+            final MemoCache<T, R> store) {
+        Function<T, R> memoized = new Function<T, R>() {
             @Override
             public R apply(final T input) {
-                return store.computeIfAbsent(input, key -> function.apply(this, key));
+                return store.get(input, key -> function.apply(this, key));
             }
         };
         return memoized.apply(input);
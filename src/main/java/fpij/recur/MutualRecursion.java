@@ -0,0 +1,40 @@
+package fpij.recur;
+
+import static fpij.recur.TailCalls.call;
+import static fpij.recur.TailCalls.done;
+import java.math.BigInteger;
+
+public class MutualRecursion {
+
+    public static TailCall<Boolean> isEven(final int number) {
+        return number == 0 ? done(true) : call(() -> isOdd(number - 1));
+    }
+
+    public static TailCall<Boolean> isOdd(final int number) {
+        return number == 0 ? done(false) : call(() -> isEven(number - 1));
+    }
+
+    // not a tail call: the addition waits for the recursive result
+    public static TailCall<Long> sum(final long number) {
+        if (number == 0) {
+            return done(0L);
+        }
+        return call(() -> sum(number - 1)).map(total -> total + number);
+    }
+
+    // two pending calls per level
+    public static TailCall<BigInteger> fibonacci(final int number) {
+        if (number < 2) {
+            return done(BigInteger.valueOf(number));
+        }
+        return call(() -> fibonacci(number - 1))
+                .flatMap(first -> call(() -> fibonacci(number - 2))
+                .map(second -> first.add(second)));
+    }
+
+    public static void main(final String[] args) {
+        System.out.println(isEven(1_000_001).invoke());
+        System.out.println(sum(5_000_000).invoke());
+        System.out.println(fibonacci(25).invoke());
+    }
+}
@@ -0,0 +1,163 @@
+package fpij.recur;
+
+import java.math.BigInteger;
+import java.util.BitSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.IntToLongFunction;
+
+// Multiplying n! one factor at a time keeps one huge operand and one tiny one,
+// which is quadratic. A product tree multiplies operands of similar size, so
+// the upper levels hit BigInteger's Karatsuba and Toom-Cook paths, and its
+// subtrees are independent fork/join tasks. The prime-swing variant computes
+// n! = ((n/2)!)^2 * swing(n) with swing(n) a product of prime powers, which
+// needs far fewer multiplications of big numbers.
+public final class ParallelFactorial {
+
+    // factorials below this are kept in a table
+    private static final int CACHED = 256;
+    private static final BigInteger[] SMALL = new BigInteger[CACHED];
+    // a leaf multiplies this many factors sequentially
+    private static final int LEAF = 512;
+
+    static {
+        SMALL[0] = BigInteger.ONE;
+        for (int n = 1; n < CACHED; n++) {
+            SMALL[n] = SMALL[n - 1].multiply(BigInteger.valueOf(n));
+        }
+    }
+
+    private ParallelFactorial() {
+    }
+
+    public static BigInteger factorial(final int number) {
+        checkNotNegative(number);
+        if (number < CACHED) {
+            return SMALL[number];
+        }
+        return product(i -> i + 2L, number - 1);
+    }
+
+    public static BigInteger primeSwingFactorial(final int number) {
+        checkNotNegative(number);
+        return primeSwingFactorial(number, primesUpTo(number));
+    }
+
+    private static BigInteger primeSwingFactorial(final int number, final BitSet composite) {
+        if (number < CACHED) {
+            return SMALL[number];
+        }
+        final BigInteger half = primeSwingFactorial(number / 2, composite);
+        // multiplying a BigInteger by itself takes the faster squaring path
+        return half.multiply(half).multiply(swing(number, composite));
+    }
+
+    // swing(n) = n! / ((n/2)!)^2; prime p occurs in it once for every odd
+    // floor(n / p^k), and its whole contribution never exceeds n
+    private static BigInteger swing(final int number, final BitSet composite) {
+        final long[] factors = new long[number / 2 + 2];
+        int count = 0;
+        for (int p = 2; p <= number; p = p == 2 ? 3 : p + 2) {
+            if (p == 2 || !composite.get(p)) {
+                final long power = swingPower(number, p);
+                if (power > 1) {
+                    factors[count++] = power;
+                }
+            }
+        }
+        return product(i -> factors[i], count);
+    }
+
+    private static long swingPower(final int number, final int prime) {
+        long power = 1;
+        for (int q = number / prime; q > 0; q /= prime) {
+            if ((q & 1) == 1) {
+                power *= prime;
+            }
+        }
+        return power;
+    }
+
+    // composite.get(n) for odd n up to limit; even numbers are skipped by the caller
+    private static BitSet primesUpTo(final int limit) {
+        final BitSet composite = new BitSet(limit + 1);
+        for (long p = 3; p * p <= limit; p += 2) {
+            if (!composite.get((int) p)) {
+                for (long multiple = p * p; multiple <= limit; multiple += 2 * p) {
+                    composite.set((int) multiple);
+                }
+            }
+        }
+        return composite;
+    }
+
+    private static BigInteger product(final IntToLongFunction factor, final int count) {
+        final Product task = new Product(factor, 0, count);
+        return count <= LEAF ? task.compute() : ForkJoinPool.commonPool().invoke(task);
+    }
+
+    private static class Product extends RecursiveTask<BigInteger> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final IntToLongFunction factor;
+        private final int from;
+        private final int to;
+
+        Product(final IntToLongFunction factor, final int from, final int to) {
+            this.factor = factor;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected BigInteger compute() {
+            if (to - from <= LEAF) {
+                return leaf();
+            }
+            final int middle = (from + to) >>> 1;
+            final Product right = new Product(factor, middle, to);
+            right.fork();
+            final BigInteger left = new Product(factor, from, middle).compute();
+            return left.multiply(right.join());
+        }
+
+        // gathers factors in a long until the next one could overflow it
+        private BigInteger leaf() {
+            BigInteger result = BigInteger.ONE;
+            long partial = 1;
+            for (int i = from; i < to; i++) {
+                final long next = factor.applyAsLong(i);
+                if (partial > Long.MAX_VALUE / next) {
+                    result = result.multiply(BigInteger.valueOf(partial));
+                    partial = next;
+                } else {
+                    partial *= next;
+                }
+            }
+            return result.multiply(BigInteger.valueOf(partial));
+        }
+    }
+
+    private static void checkNotNegative(final int number) {
+        if (number < 0) {
+            throw new IllegalArgumentException("factorial of a negative number: " + number);
+        }
+    }
+
+    public static void main(final String[] args) {
+        System.out.println(factorial(5));
+        System.out.println(factorial(20_000).equals(BigFactorial.factorial(BigFactorial.TWENTYK)));
+
+        for (final int number : new int[] {20_000, 200_000}) {
+            long start = System.nanoTime();
+            final BigInteger tree = factorial(number);
+            final double treeTime = (System.nanoTime() - start) / 1.0e9;
+            start = System.nanoTime();
+            final BigInteger swing = primeSwingFactorial(number);
+            final double swingTime = (System.nanoTime() - start) / 1.0e9;
+            System.out.println(String.format("%d! has %d bits, product tree %.3fs, prime swing %.3fs, same: %b",
+                    number, tree.bitLength(), treeTime, swingTime, tree.equals(swing)));
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package fpij.recur;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+// Fills the profit of every length from 1 up, so no recursion and no stack
+// limit. Each length takes the best of selling it whole and every split into
+// two shorter, already solved lengths; in parallel mode the splits of a long
+// rod are reduced with fork/join, one length at a time.
+public class RodCutterBottomUp extends RodCutterBasic {
+
+    // below this many split points a length is cheaper to reduce in one thread
+    private static final int SPLITS_PER_TASK = 8192;
+
+    private final boolean parallel;
+
+    public RodCutterBottomUp(final List<Integer> pricesForLength) {
+        this(pricesForLength, false);
+    }
+
+    public RodCutterBottomUp(final List<Integer> pricesForLength, final boolean inParallel) {
+        super(pricesForLength);
+        // on a single core the forks only add overhead
+        parallel = inParallel && ForkJoinPool.getCommonPoolParallelism() > 1;
+    }
+
+    public static class Solution {
+
+        public final int profit;
+        public final List<Integer> pieces;
+
+        Solution(final int totalProfit, final List<Integer> cutPieces) {
+            profit = totalProfit;
+            pieces = cutPieces;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("profit: %d pieces: %s", profit, pieces);
+        }
+    }
+
+    @Override
+    public int maxProfit(final int length) {
+        return solve(length).profit;
+    }
+
+    public Solution solve(final int length) {
+        final int[] profits = new int[length + 1];
+        // the shorter half of the best split, 0 when the rod is sold whole
+        final int[] splits = new int[length + 1];
+        for (int rod = 1; rod <= length; rod++) {
+            final long best = parallel && rod / 2 > SPLITS_PER_TASK
+                    ? ForkJoinPool.commonPool().invoke(new BestSplit(profits, rod, 1, rod / 2 + 1))
+                    : bestSplit(profits, rod, 1, rod / 2 + 1);
+            final int whole = rod <= prices.size() ? prices.get(rod - 1) : 0;
+            final int profitWhenCut = (int) (best >> 32);
+            if (rod > 1 && profitWhenCut > whole) {
+                profits[rod] = profitWhenCut;
+                splits[rod] = (int) best;
+            } else {
+                profits[rod] = whole;
+            }
+        }
+        return new Solution(profits[length], pieces(splits, length));
+    }
+
+    // the best split in [from, to) packed as profit << 32 | split; on equal
+    // profit the shorter split wins, so both modes pick the same cuts
+    private static long bestSplit(final int[] profits, final int rod, final int from, final int to) {
+        int bestProfit = Integer.MIN_VALUE;
+        int bestSplit = 0;
+        for (int split = from; split < to; split++) {
+            final int profit = profits[split] + profits[rod - split];
+            if (profit > bestProfit) {
+                bestProfit = profit;
+                bestSplit = split;
+            }
+        }
+        return pack(bestProfit, bestSplit);
+    }
+
+    private static long pack(final int profit, final int split) {
+        return ((long) profit << 32) | split;
+    }
+
+    private static long better(final long left, final long right) {
+        return (int) (right >> 32) > (int) (left >> 32) ? right : left;
+    }
+
+    private static class BestSplit extends RecursiveTask<Long> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int[] profits;
+        private final int rod;
+        private final int from;
+        private final int to;
+
+        BestSplit(final int[] profits, final int rod, final int from, final int to) {
+            this.profits = profits;
+            this.rod = rod;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Long compute() {
+            if (to - from <= SPLITS_PER_TASK) {
+                return bestSplit(profits, rod, from, to);
+            }
+            final int middle = (from + to) >>> 1;
+            final BestSplit right = new BestSplit(profits, rod, middle, to);
+            right.fork();
+            final long left = new BestSplit(profits, rod, from, middle).compute();
+            return better(left, right.join());
+        }
+    }
+
+    private static List<Integer> pieces(final int[] splits, final int length) {
+        final List<Integer> pieces = new ArrayList<>();
+        final Deque<Integer> pending = new ArrayDeque<>();
+        if (length > 0) {
+            pending.push(length);
+        }
+        while (!pending.isEmpty()) {
+            final int rod = pending.pop();
+            if (splits[rod] == 0) {
+                pieces.add(rod);
+            } else {
+                pending.push(rod - splits[rod]);
+                pending.push(splits[rod]);
+            }
+        }
+        Collections.sort(pieces);
+        return pieces;
+    }
+
+    public static void main(final String[] args) {
+        run(new RodCutterBottomUp(priceValues));
+        System.out.println(new RodCutterBottomUp(priceValues).solve(22));
+
+        final List<Integer> manyPrices = new ArrayList<>();
+        for (int length = 1; length <= 5_000; length++) {
+            manyPrices.add(length + (length % 97 == 0 ? 500 : 0));
+        }
+        for (final boolean inParallel : new boolean[] {false, true}) {
+            final RodCutterBottomUp rodCutter = new RodCutterBottomUp(manyPrices, inParallel);
+            final long start = System.nanoTime();
+            final Solution solution = rodCutter.solve(40_000);
+            System.out.println((inParallel ? "parallel " : "sequential ") + solution.profit
+                    + " from " + solution.pieces.size() + " pieces in "
+                    + (System.nanoTime() - start) / 1.0e9);
+        }
+    }
+}
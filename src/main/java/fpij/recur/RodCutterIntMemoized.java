@@ -0,0 +1,42 @@
+package fpij.recur;
+
+import java.util.List;
+
+public class RodCutterIntMemoized extends RodCutterBasic {
+
+    private final int[] priceTable;
+
+    public RodCutterIntMemoized(final List<Integer> pricesForLength) {
+        super(pricesForLength);
+        priceTable = pricesForLength.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    // the profit for a length is the best price of a first piece plus the
+    // best profit for the rest; pieces longer than the price list sell for
+    // nothing, so with non-negative prices only the first priceTable.length
+    // cut points can win, which keeps each length O(prices) instead of O(length)
+    @Override
+    public int maxProfit(final int rodLength) {
+        final IntMemoizer.Body compute = (func, length) -> {
+            int profit = 0;
+            for (int piece = 1; piece <= Math.min(length, priceTable.length); piece++) {
+                final int priceWhenCut = priceTable[piece - 1] + func.applyAsInt(length - piece);
+                if (profit < priceWhenCut) {
+                    profit = priceWhenCut;
+                }
+            }
+            return profit;
+        };
+        // filling the shorter lengths first keeps the recursion one level deep
+        return IntMemoizer.dense(rodLength + 1, compute).fillRange(0, rodLength).applyAsInt(rodLength);
+    }
+
+    public static void main(final String[] args) {
+        final RodCutterIntMemoized rodCutter = new RodCutterIntMemoized(priceValues);
+        run(rodCutter);
+
+        final long start = System.nanoTime();
+        System.out.println(rodCutter.maxProfit(500_000));
+        System.out.println("Time taken " + (System.nanoTime() - start) / 1.0e9);
+    }
+}
@@ -15,8 +15,17 @@ import java.util.function.Function;
 
 public class RodCutterMemoized extends RodCutterBasic {
 
+    private final MemoCache<Integer, Integer> profits;
+
     public RodCutterMemoized(final List<Integer> pricesForLength) {
+        this(pricesForLength, MemoCache.<Integer, Integer>builder().maximumSize(100_000).build());
+    }
+
+    // profits stay warm between calls; share the cache only between cutters
+    // with the same prices
+    public RodCutterMemoized(final List<Integer> pricesForLength, final MemoCache<Integer, Integer> profitCache) {
         super(pricesForLength);
+        profits = profitCache;
     }
 
     @Override
@@ -31,7 +40,7 @@ public class RodCutterMemoized extends RodCutterBasic {
             }
             return profit;
         };
-        return callMemoized(compute, rodLength);
+        return callMemoized(compute, rodLength, profits);
     }
 
     public static void main(final String[] args) {
@@ -40,5 +49,7 @@ public class RodCutterMemoized extends RodCutterBasic {
 
         System.out.println(rodCutterMomoized.maxProfit(5));
         System.out.println(rodCutterMomoized.maxProfit(22));
+        System.out.println(rodCutterMomoized.maxProfit(22));
+        System.out.println(rodCutterMomoized.profits.stats());
     }
 }
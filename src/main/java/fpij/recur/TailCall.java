@@ -8,7 +8,7 @@
  ** */
 package fpij.recur;
 
-import java.util.stream.Stream;
+import java.util.function.Function;
 
 @FunctionalInterface
 public interface TailCall<T> {
@@ -24,11 +24,19 @@ public interface TailCall<T> {
         throw new Error("not implemented");
     }
 
+    // a plain loop: no stream pipeline, no lambda per bounce; pending
+    // flatMap/map continuations wait on a heap stack, not the thread stack
     default T invoke() {
-        return Stream.iterate(this, TailCall::apply)
-                .filter(TailCall::isComplete)
-                .findFirst()
-                .get()
-                .result();
+        return TailCalls.run(this);
+    }
+
+    // continue with the result of this call, e.g. for non-tail calls like
+    // call(() -> fib(n - 1)).flatMap(a -> call(() -> fib(n - 2)).map(b -> a + b))
+    default <R> TailCall<R> flatMap(final Function<? super T, TailCall<R>> next) {
+        return new TailCalls.FlatMap<>(this, next);
+    }
+
+    default <R> TailCall<R> map(final Function<? super T, ? extends R> mapper) {
+        return flatMap(value -> TailCalls.done(mapper.apply(value)));
     }
 }
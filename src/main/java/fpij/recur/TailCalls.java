@@ -8,6 +8,10 @@
  ** */
 package fpij.recur;
 
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.function.Function;
+
 public class TailCalls {
 
     public static <T> TailCall<T> call(final TailCall<T> nextCall) {
@@ -32,4 +36,85 @@ public class TailCalls {
             }
         };
     }
+
+    @SuppressWarnings("unchecked")
+    static <T> T run(final TailCall<T> start) {
+        TailCall<Object> call = (TailCall<Object>) start;
+        Deque<Function<Object, TailCall<Object>>> continuations = null;
+        while (true) {
+            if (call instanceof FlatMap) {
+                final FlatMap<Object, Object> flatMap = (FlatMap<Object, Object>) call;
+                if (continuations == null) {
+                    continuations = new ArrayDeque<>();
+                }
+                continuations.push(flatMap.next);
+                call = flatMap.source;
+            } else if (!call.isComplete()) {
+                call = call.apply();
+            } else if (continuations == null || continuations.isEmpty()) {
+                return (T) call.result();
+            } else {
+                call = continuations.pop().apply(call.result());
+            }
+        }
+    }
+
+    // source, then next applied to its result; invoke() unwinds these onto
+    // its own stack, apply() is only here for callers that step manually
+    static final class FlatMap<S, T> implements TailCall<T> {
+
+        private final TailCall<S> source;
+        private final Function<Object, TailCall<Object>> next;
+
+        @SuppressWarnings("unchecked")
+        FlatMap(final TailCall<S> source, final Function<? super S, TailCall<T>> next) {
+            this.source = source;
+            this.next = (Function<Object, TailCall<Object>>) (Function<?, ?>) next;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public TailCall<T> apply() {
+            if (source.isComplete()) {
+                return (TailCall<T>) next.apply(source.result());
+            }
+            return source.apply().flatMap(value -> (TailCall<T>) next.apply(value));
+        }
+    }
+
+    // A reusable frame: step() updates the subclass's own fields and returns
+    // bounce() to go round again, or finish(value) to stop, so a whole
+    // recursion runs on one object with no allocation per step.
+    public abstract static class Bounce<T> implements TailCall<T> {
+
+        private boolean complete;
+        private T result;
+
+        protected abstract TailCall<T> step();
+
+        protected final TailCall<T> bounce() {
+            return this;
+        }
+
+        protected final TailCall<T> finish(final T value) {
+            result = value;
+            complete = true;
+            return this;
+        }
+
+        @Override
+        public final TailCall<T> apply() {
+            return step();
+        }
+
+        @Override
+        public final boolean isComplete() {
+            return complete;
+        }
+
+        @Override
+        public final T result() {
+            return result;
+        }
+    }
 }
@@ -3,10 +3,7 @@ package functional.v22;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Set;
-import java.util.function.Predicate;
 
 public class Car {
 
@@ -67,23 +64,23 @@ public class Car {
                         ? ", trunkContents=" + trunkContents : " no trunk") + '}';
     }
 
-    public static final Predicate<Car> RED_CAR_CRITERION = c -> c.color.equals("Red");
+    // критерії - вузли Criterion, тому їх комбінації можна віддати індексу
+    public static final Criterion<Car> RED_CAR_CRITERION = CarCriterion.colorIn("Red");
 
-    public static Predicate<Car> getRedCarCriterion() {
+    public static Criterion<Car> getRedCarCriterion() {
         return RED_CAR_CRITERION;
     }
 
-    public static Predicate<Car> getFourPassengerCriterion() {
-        return c -> c.getPassengers().size() == 4;
+    public static Criterion<Car> getFourPassengerCriterion() {
+        return CarCriterion.passengerCount(4);
     }
 
-    public static Predicate<Car> getColorCriterion(String... colors) {
-        Set<String> colorSet = new HashSet<>(Arrays.asList(colors));
-        return c -> colorSet.contains(c.color);
+    public static Criterion<Car> getColorCriterion(String... colors) {
+        return CarCriterion.colorIn(colors);
     }
 
-    public static Predicate<Car> getGasLevelCarCriterion(final int threshold) {
-        return c -> c.gasLevel >= threshold;
+    public static Criterion<Car> getGasLevelCarCriterion(final int threshold) {
+        return CarCriterion.gasLevelAtLeast(threshold);
     }
 
     public static Comparator<Car> getGasComparator() {
@@ -0,0 +1,153 @@
+package functional.v22;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Листки Criterion для Car, які індекс може впізнати: колір з набору,
+ * пальне не менше порогу, точна кількість пасажирів.
+ */
+public final class CarCriterion {
+
+    private CarCriterion() {
+    }
+
+    public static Criterion<Car> colorIn(String... colors) {
+        return new ColorIn(new HashSet<>(Arrays.asList(colors)));
+    }
+
+    public static Criterion<Car> gasLevelAtLeast(int threshold) {
+        return new GasLevelAtLeast(threshold);
+    }
+
+    public static Criterion<Car> passengerCount(int count) {
+        return new PassengerCount(count);
+    }
+
+    /**
+     * Чи складений критерій лише з листків цього класу через not, and і or.
+     * Такий критерій індекс може обчислити сам, а його частини можна
+     * перевіряти в будь-якому порядку; будь-який інший вид критерію, зокрема
+     * ще невідомий, — ні. Новий листок досить додати сюди.
+     */
+    static boolean isKnownTree(Criterion<?> crit) {
+        if (crit instanceof ColorIn || crit instanceof GasLevelAtLeast || crit instanceof PassengerCount) {
+            return true;
+        }
+        if (crit instanceof Criterion.Not) {
+            return isKnownTree(((Criterion.Not<?>) crit).operand());
+        }
+        if (crit instanceof Criterion.And || crit instanceof Criterion.Or) {
+            for (Criterion<?> operand : ((Criterion.Junction<?>) crit).operands()) {
+                if (!isKnownTree(operand)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+    public static final class ColorIn extends Criterion<Car> {
+
+        private final Set<String> colors;
+
+        ColorIn(Set<String> colors) {
+            this.colors = Collections.unmodifiableSet(colors);
+        }
+
+        public Set<String> colors() {
+            return colors;
+        }
+
+        @Override
+        public boolean test(Car c) {
+            return colors.contains(c.getColor());
+        }
+
+        @Override
+        Criterion<Car> mergeAnd(Criterion<Car> other) {
+            if (!(other instanceof ColorIn)) {
+                return null;
+            }
+            Set<String> both = new HashSet<>(colors);
+            both.retainAll(((ColorIn) other).colors);
+            return new ColorIn(both);
+        }
+
+        @Override
+        Criterion<Car> mergeOr(Criterion<Car> other) {
+            if (!(other instanceof ColorIn)) {
+                return null;
+            }
+            Set<String> either = new HashSet<>(colors);
+            either.addAll(((ColorIn) other).colors);
+            return new ColorIn(either);
+        }
+
+        @Override
+        public String toString() {
+            return "color in " + colors;
+        }
+    }
+
+    public static final class GasLevelAtLeast extends Criterion<Car> {
+
+        private final int threshold;
+
+        GasLevelAtLeast(int threshold) {
+            this.threshold = threshold;
+        }
+
+        public int threshold() {
+            return threshold;
+        }
+
+        @Override
+        public boolean test(Car c) {
+            return c.getGasLevel() >= threshold;
+        }
+
+        @Override
+        Criterion<Car> mergeAnd(Criterion<Car> other) {
+            return other instanceof GasLevelAtLeast
+                    ? new GasLevelAtLeast(Math.max(threshold, ((GasLevelAtLeast) other).threshold)) : null;
+        }
+
+        @Override
+        Criterion<Car> mergeOr(Criterion<Car> other) {
+            return other instanceof GasLevelAtLeast
+                    ? new GasLevelAtLeast(Math.min(threshold, ((GasLevelAtLeast) other).threshold)) : null;
+        }
+
+        @Override
+        public String toString() {
+            return "gas >= " + threshold;
+        }
+    }
+
+    public static final class PassengerCount extends Criterion<Car> {
+
+        private final int count;
+
+        PassengerCount(int count) {
+            this.count = count;
+        }
+
+        public int count() {
+            return count;
+        }
+
+        @Override
+        public boolean test(Car c) {
+            return c.getPassengers().size() == count;
+        }
+
+        @Override
+        public String toString() {
+            return "passengers == " + count;
+        }
+    }
+}
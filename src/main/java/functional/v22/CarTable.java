@@ -0,0 +1,235 @@
+package functional.v22;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntPredicate;
+
+/**
+ * Парк машин, збережений по стовпцях: рівень пального в int[], колір як код
+ * зі словника кольорів, пасажири як зсуви в один плоский масив кодів імен.
+ * Критерії тут - IntPredicate над номером рядка, які читають лише потрібний
+ * стовпець, тож вибірка по всьому парку - це лінійний прохід по масивах без
+ * створення об'єктів Car.
+ */
+public class CarTable {
+
+    private final int size;
+    private final int[] gasLevels;
+    private final int[] colorCodes;
+    private final Dictionary colors;
+    // пасажири рядка row - passengerIds[passengerOffsets[row] .. passengerOffsets[row + 1])
+    private final int[] passengerOffsets;
+    private final int[] passengerIds;
+    private final Dictionary names;
+    private final BitSet withTrunk;
+
+    private CarTable(int size, int[] gasLevels, int[] colorCodes, Dictionary colors,
+            int[] passengerOffsets, int[] passengerIds, Dictionary names, BitSet withTrunk) {
+        this.size = size;
+        this.gasLevels = gasLevels;
+        this.colorCodes = colorCodes;
+        this.colors = colors;
+        this.passengerOffsets = passengerOffsets;
+        this.passengerIds = passengerIds;
+        this.names = names;
+        this.withTrunk = withTrunk;
+    }
+
+    public static CarTable of(Iterable<Car> cars) {
+        int[] gasLevels = new int[16];
+        int[] colorCodes = new int[16];
+        int[] passengerOffsets = new int[17];
+        int[] passengerIds = new int[16];
+        Dictionary colors = new Dictionary();
+        Dictionary names = new Dictionary();
+        BitSet withTrunk = new BitSet();
+        int row = 0;
+        for (Car c : cars) {
+            if (row == gasLevels.length) {
+                gasLevels = Arrays.copyOf(gasLevels, row * 2);
+                colorCodes = Arrays.copyOf(colorCodes, row * 2);
+                passengerOffsets = Arrays.copyOf(passengerOffsets, row * 2 + 1);
+            }
+            gasLevels[row] = c.getGasLevel();
+            colorCodes[row] = colors.encode(c.getColor());
+            int offset = passengerOffsets[row];
+            List<String> passengers = c.getPassengers();
+            if (offset + passengers.size() > passengerIds.length) {
+                passengerIds = Arrays.copyOf(passengerIds, Math.max(passengerIds.length * 2, offset + passengers.size()));
+            }
+            for (String p : passengers) {
+                passengerIds[offset++] = names.encode(p);
+            }
+            passengerOffsets[row + 1] = offset;
+            if (c.getTrunkContents() != null) {
+                withTrunk.set(row);
+            }
+            row++;
+        }
+        return new CarTable(row, Arrays.copyOf(gasLevels, row), Arrays.copyOf(colorCodes, row), colors,
+                Arrays.copyOf(passengerOffsets, row + 1), Arrays.copyOf(passengerIds, passengerOffsets[row]),
+                names, withTrunk);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int getGasLevel(int row) {
+        return gasLevels[row];
+    }
+
+    public String getColor(int row) {
+        return colors.decode(colorCodes[row]);
+    }
+
+    public int getPassengerCount(int row) {
+        return passengerOffsets[row + 1] - passengerOffsets[row];
+    }
+
+    public List<String> getPassengers(int row) {
+        int from = passengerOffsets[row];
+        int count = getPassengerCount(row);
+        return new AbstractList<String>() {
+            @Override
+            public String get(int index) {
+                if (index < 0 || index >= count) {
+                    throw new IndexOutOfBoundsException(Integer.toString(index));
+                }
+                return names.decode(passengerIds[from + index]);
+            }
+
+            @Override
+            public int size() {
+                return count;
+            }
+        };
+    }
+
+    /**
+     * Збирає об'єкт Car для рядка; для вибірок він не потрібен.
+     */
+    public Car getCar(int row) {
+        String[] passengers = getPassengers(row).toArray(new String[0]);
+        return withTrunk.get(row)
+                ? Car.withGasColorPassengersAndTrunk(gasLevels[row], getColor(row), passengers)
+                : Car.withGasColorPassengers(gasLevels[row], getColor(row), passengers);
+    }
+
+    // критерії, рівнозначні фабрикам Car, але над стовпцями цієї таблиці
+    public IntPredicate getRedCarCriterion() {
+        return getColorCriterion("Red");
+    }
+
+    public IntPredicate getColorCriterion(String... wanted) {
+        boolean[] matches = new boolean[colors.size()];
+        for (String color : wanted) {
+            int code = colors.lookup(color);
+            if (code >= 0) {
+                matches[code] = true;
+            }
+        }
+        return row -> matches[colorCodes[row]];
+    }
+
+    public IntPredicate getGasLevelCarCriterion(int threshold) {
+        return row -> gasLevels[row] >= threshold;
+    }
+
+    public IntPredicate getFourPassengerCriterion() {
+        return getPassengerCountCriterion(4);
+    }
+
+    public IntPredicate getPassengerCountCriterion(int count) {
+        return row -> passengerOffsets[row + 1] - passengerOffsets[row] == count;
+    }
+
+    /**
+     * Номери рядків, що відповідають критерію, у порядку зростання.
+     */
+    public int[] scan(IntPredicate crit) {
+        int[] rows = new int[16];
+        int found = 0;
+        for (int row = 0; row < size; row++) {
+            if (crit.test(row)) {
+                if (found == rows.length) {
+                    rows = Arrays.copyOf(rows, found * 2);
+                }
+                rows[found++] = row;
+            }
+        }
+        return Arrays.copyOf(rows, found);
+    }
+
+    public int count(IntPredicate crit) {
+        int found = 0;
+        for (int row = 0; row < size; row++) {
+            if (crit.test(row)) {
+                found++;
+            }
+        }
+        return found;
+    }
+
+    public List<Car> getByCriterion(IntPredicate crit) {
+        List<Car> output = new ArrayList<>();
+        for (int row : scan(crit)) {
+            output.add(getCar(row));
+        }
+        return output;
+    }
+
+    /**
+     * Рядки словника отримують коди 0, 1, 2... в порядку першої появи.
+     */
+    private static final class Dictionary {
+
+        private final Map<String, Integer> codes = new HashMap<>();
+        private final List<String> values = new ArrayList<>();
+
+        int encode(String value) {
+            Integer code = codes.get(value);
+            if (code == null) {
+                code = values.size();
+                codes.put(value, code);
+                values.add(value);
+            }
+            return code;
+        }
+
+        int lookup(String value) {
+            Integer code = codes.get(value);
+            return code == null ? -1 : code;
+        }
+
+        String decode(int code) {
+            return values.get(code);
+        }
+
+        int size() {
+            return values.size();
+        }
+    }
+
+    public static void main(String[] args) {
+        List<Car> cars = Arrays.asList(
+                Car.withGasColorPassengers(6, "Red", "Fred", "Jim", "Sheila"),
+                Car.withGasColorPassengers(3, "Octarine", "Rincewind", "Ridcully"),
+                Car.withGasColorPassengersAndTrunk(9, "Black", "Weatherwax", "Magrat"),
+                Car.withGasColorPassengers(7, "Green", "Valentine", "Gillian", "Anne", "Dr. Mahmoud"),
+                Car.withGasColorPassengers(6, "Red", "Ender", "Hyrum", "Locke", "Bonzo"));
+        CarTable table = CarTable.of(cars);
+
+        CarScratch.showAll(table.getByCriterion(table.getRedCarCriterion()));
+        CarScratch.showAll(table.getByCriterion(table.getGasLevelCarCriterion(7)));
+        CarScratch.showAll(table.getByCriterion(
+                table.getColorCriterion("Red", "Black").and(table.getFourPassengerCriterion().negate())));
+        System.out.println("rows with 4 passengers: " + Arrays.toString(table.scan(table.getFourPassengerCriterion())));
+        System.out.println("passengers of row 3: " + table.getPassengers(3));
+    }
+}
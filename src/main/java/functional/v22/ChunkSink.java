@@ -0,0 +1,51 @@
+package functional.v22;
+
+/**
+ * Ланка flatMap, яка складає внутрішні елементи в один масив, що
+ * перевикористовується протягом усього проходу, і віддає його далі
+ * пакетами через acceptBatch.
+ */
+abstract class ChunkSink<E, F> implements Sink<E> {
+
+    static final int DEFAULT_CHUNK = 256;
+
+    private final Sink<? super F> downstream;
+    private final Object[] chunk;
+    private int count;
+
+    ChunkSink(Sink<? super F> downstream, int chunkSize) {
+        this.downstream = downstream;
+        this.chunk = new Object[chunkSize];
+    }
+
+    /**
+     * @return false, якщо після відправки пакета наступна ланка попросила
+     * зупинитися і внутрішні елементи далі читати не треба
+     */
+    protected final boolean emit(F f) {
+        chunk[count++] = f;
+        if (count == chunk.length) {
+            flush();
+            return !downstream.cancellationRequested();
+        }
+        return true;
+    }
+
+    private void flush() {
+        if (count > 0) {
+            downstream.acceptBatch(chunk, count);
+            count = 0;
+        }
+    }
+
+    @Override
+    public boolean cancellationRequested() {
+        return downstream.cancellationRequested();
+    }
+
+    @Override
+    public void end() {
+        flush();
+        downstream.end();
+    }
+}
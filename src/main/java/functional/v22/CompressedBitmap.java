@@ -0,0 +1,376 @@
+package functional.v22;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Незмінна множина невід'ємних int (номерів рядків), стиснута за схемою
+ * Roaring: значення групуються за старшими 16 бітами, а кожна група
+ * зберігається або як відсортований масив молодших 16 біт (до 4096
+ * значень), або як бітова карта на 65536 біт. Перетин, об'єднання і
+ * різниця працюють по групах, не розпаковуючи всю множину.
+ */
+public final class CompressedBitmap {
+
+    private static final int ARRAY_MAX = 4096;
+    private static final int WORDS = 1 << 10;
+
+    public static final CompressedBitmap EMPTY = new CompressedBitmap(new char[0], new Container[0]);
+
+    private final char[] keys;
+    private final Container[] containers;
+
+    private CompressedBitmap(char[] keys, Container[] containers) {
+        this.keys = keys;
+        this.containers = containers;
+    }
+
+    /**
+     * Множина [from, to).
+     */
+    public static CompressedBitmap range(int from, int to) {
+        Builder b = new Builder();
+        for (int v = from; v < to; v++) {
+            b.add(v);
+        }
+        return b.build();
+    }
+
+    public static CompressedBitmap of(int... sortedValues) {
+        Builder b = new Builder();
+        for (int v : sortedValues) {
+            b.add(v);
+        }
+        return b.build();
+    }
+
+    public boolean contains(int value) {
+        if (value < 0) {
+            return false;
+        }
+        int i = Arrays.binarySearch(keys, (char) (value >>> 16));
+        return i >= 0 && containers[i].contains((char) value);
+    }
+
+    public int cardinality() {
+        int card = 0;
+        for (Container c : containers) {
+            card += c.cardinality;
+        }
+        return card;
+    }
+
+    public boolean isEmpty() {
+        return keys.length == 0;
+    }
+
+    public void forEach(IntConsumer action) {
+        for (int i = 0; i < keys.length; i++) {
+            containers[i].forEach(keys[i] << 16, action);
+        }
+    }
+
+    public int[] toArray() {
+        int[] result = new int[cardinality()];
+        int[] next = {0};
+        forEach(v -> result[next[0]++] = v);
+        return result;
+    }
+
+    public CompressedBitmap and(CompressedBitmap other) {
+        Merger m = new Merger(Math.min(keys.length, other.keys.length));
+        int i = 0;
+        int j = 0;
+        while (i < keys.length && j < other.keys.length) {
+            if (keys[i] < other.keys[j]) {
+                i++;
+            } else if (keys[i] > other.keys[j]) {
+                j++;
+            } else {
+                m.add(keys[i], containers[i++].and(other.containers[j++]));
+            }
+        }
+        return m.build();
+    }
+
+    public CompressedBitmap or(CompressedBitmap other) {
+        Merger m = new Merger(keys.length + other.keys.length);
+        int i = 0;
+        int j = 0;
+        while (i < keys.length || j < other.keys.length) {
+            if (j == other.keys.length || (i < keys.length && keys[i] < other.keys[j])) {
+                m.add(keys[i], containers[i++]);
+            } else if (i == keys.length || keys[i] > other.keys[j]) {
+                m.add(other.keys[j], other.containers[j++]);
+            } else {
+                m.add(keys[i], containers[i++].or(other.containers[j++]));
+            }
+        }
+        return m.build();
+    }
+
+    public CompressedBitmap andNot(CompressedBitmap other) {
+        Merger m = new Merger(keys.length);
+        int j = 0;
+        for (int i = 0; i < keys.length; i++) {
+            while (j < other.keys.length && other.keys[j] < keys[i]) {
+                j++;
+            }
+            if (j < other.keys.length && other.keys[j] == keys[i]) {
+                m.add(keys[i], containers[i].andNot(other.containers[j]));
+            } else {
+                m.add(keys[i], containers[i]);
+            }
+        }
+        return m.build();
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(toArray());
+    }
+
+    /**
+     * Збирає множину зі значень, що подаються в порядку зростання.
+     */
+    public static final class Builder {
+
+        private final Merger merger = new Merger(4);
+        private int currentKey = -1;
+        private char[] values = new char[16];
+        private long[] words;
+        private int count;
+        private int last = -1;
+
+        public Builder add(int value) {
+            if (value <= last) {
+                throw new IllegalArgumentException("values must be added in increasing order: " + value);
+            }
+            last = value;
+            int key = value >>> 16;
+            if (key != currentKey) {
+                flush();
+                currentKey = key;
+            }
+            char low = (char) value;
+            if (words != null) {
+                words[low >>> 6] |= 1L << low;
+            } else if (count == ARRAY_MAX) {
+                words = new long[WORDS];
+                for (int i = 0; i < count; i++) {
+                    words[values[i] >>> 6] |= 1L << values[i];
+                }
+                words[low >>> 6] |= 1L << low;
+            } else {
+                if (count == values.length) {
+                    values = Arrays.copyOf(values, count * 2);
+                }
+                values[count] = low;
+            }
+            count++;
+            return this;
+        }
+
+        private void flush() {
+            if (count > 0) {
+                merger.add((char) currentKey, words != null
+                        ? new Container(null, words, count)
+                        : new Container(Arrays.copyOf(values, count), null, count));
+            }
+            words = null;
+            count = 0;
+        }
+
+        public CompressedBitmap build() {
+            flush();
+            currentKey = -1;
+            return merger.build();
+        }
+    }
+
+    private static final class Merger {
+
+        private char[] keys;
+        private Container[] containers;
+        private int size;
+
+        Merger(int capacity) {
+            keys = new char[Math.max(capacity, 1)];
+            containers = new Container[Math.max(capacity, 1)];
+        }
+
+        void add(char key, Container c) {
+            if (c.cardinality == 0) {
+                return;
+            }
+            if (size == keys.length) {
+                keys = Arrays.copyOf(keys, size * 2);
+                containers = Arrays.copyOf(containers, size * 2);
+            }
+            keys[size] = key;
+            containers[size++] = c;
+        }
+
+        CompressedBitmap build() {
+            return size == 0 ? EMPTY : new CompressedBitmap(Arrays.copyOf(keys, size), Arrays.copyOf(containers, size));
+        }
+    }
+
+    /**
+     * Група з однаковими старшими 16 бітами: рівно одне з array / words.
+     */
+    private static final class Container {
+
+        final char[] array;
+        final long[] words;
+        final int cardinality;
+
+        Container(char[] array, long[] words, int cardinality) {
+            this.array = array;
+            this.words = words;
+            this.cardinality = cardinality;
+        }
+
+        static Container fromWords(long[] words) {
+            int card = 0;
+            for (long w : words) {
+                card += Long.bitCount(w);
+            }
+            if (card > ARRAY_MAX) {
+                return new Container(null, words, card);
+            }
+            char[] array = new char[card];
+            int n = 0;
+            for (int i = 0; i < words.length; i++) {
+                long w = words[i];
+                while (w != 0) {
+                    array[n++] = (char) ((i << 6) + Long.numberOfTrailingZeros(w));
+                    w &= w - 1;
+                }
+            }
+            return new Container(array, null, card);
+        }
+
+        boolean contains(char low) {
+            return array != null
+                    ? Arrays.binarySearch(array, low) >= 0
+                    : (words[low >>> 6] & (1L << low)) != 0;
+        }
+
+        long[] toWords() {
+            if (words != null) {
+                return words.clone();
+            }
+            long[] w = new long[WORDS];
+            for (char v : array) {
+                w[v >>> 6] |= 1L << v;
+            }
+            return w;
+        }
+
+        void forEach(int high, IntConsumer action) {
+            if (array != null) {
+                for (char v : array) {
+                    action.accept(high | v);
+                }
+            } else {
+                for (int i = 0; i < words.length; i++) {
+                    long w = words[i];
+                    while (w != 0) {
+                        action.accept(high | ((i << 6) + Long.numberOfTrailingZeros(w)));
+                        w &= w - 1;
+                    }
+                }
+            }
+        }
+
+        // масив з бітовою картою: достатньо перевірити кожен елемент масиву
+        private static Container filter(char[] array, Container bits, boolean keep) {
+            char[] out = new char[array.length];
+            int n = 0;
+            for (char v : array) {
+                if (bits.contains(v) == keep) {
+                    out[n++] = v;
+                }
+            }
+            return new Container(Arrays.copyOf(out, n), null, n);
+        }
+
+        Container and(Container other) {
+            if (array != null && other.array != null) {
+                char[] out = new char[Math.min(array.length, other.array.length)];
+                int n = 0;
+                for (int i = 0, j = 0; i < array.length && j < other.array.length;) {
+                    if (array[i] < other.array[j]) {
+                        i++;
+                    } else if (array[i] > other.array[j]) {
+                        j++;
+                    } else {
+                        out[n++] = array[i++];
+                        j++;
+                    }
+                }
+                return new Container(Arrays.copyOf(out, n), null, n);
+            }
+            if (array != null) {
+                return filter(array, other, true);
+            }
+            if (other.array != null) {
+                return filter(other.array, this, true);
+            }
+            long[] w = words.clone();
+            for (int i = 0; i < WORDS; i++) {
+                w[i] &= other.words[i];
+            }
+            return fromWords(w);
+        }
+
+        Container or(Container other) {
+            if (array != null && other.array != null && array.length + other.array.length <= ARRAY_MAX) {
+                char[] out = new char[array.length + other.array.length];
+                int n = 0;
+                int i = 0;
+                int j = 0;
+                while (i < array.length || j < other.array.length) {
+                    if (j == other.array.length || (i < array.length && array[i] < other.array[j])) {
+                        out[n++] = array[i++];
+                    } else if (i == array.length || array[i] > other.array[j]) {
+                        out[n++] = other.array[j++];
+                    } else {
+                        out[n++] = array[i++];
+                        j++;
+                    }
+                }
+                return new Container(Arrays.copyOf(out, n), null, n);
+            }
+            long[] w = toWords();
+            if (other.words != null) {
+                for (int i = 0; i < WORDS; i++) {
+                    w[i] |= other.words[i];
+                }
+            } else {
+                for (char v : other.array) {
+                    w[v >>> 6] |= 1L << v;
+                }
+            }
+            return fromWords(w);
+        }
+
+        Container andNot(Container other) {
+            if (array != null) {
+                return filter(array, other, false);
+            }
+            long[] w = words.clone();
+            if (other.words != null) {
+                for (int i = 0; i < WORDS; i++) {
+                    w[i] &= ~other.words[i];
+                }
+            } else {
+                for (char v : other.array) {
+                    w[v >>> 6] &= ~(1L << v);
+                }
+            }
+            return fromWords(w);
+        }
+    }
+}
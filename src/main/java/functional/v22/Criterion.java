@@ -0,0 +1,175 @@
+package functional.v22;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * Predicate, який можна розібрати: and/or/negate будують дерево вузлів
+ * And/Or/Not замість непрозорих лямбд, тож індекс або оптимізатор бачить,
+ * з яких перевірок складено критерій. Звичайний Predicate стає листком
+ * Test, який можна лише викликати.
+ */
+public abstract class Criterion<E> implements Predicate<E> {
+
+    public static <E> Criterion<E> of(Predicate<? super E> pred) {
+        if (pred instanceof Criterion) {
+            @SuppressWarnings("unchecked")
+            Criterion<E> crit = (Criterion<E>) pred;
+            return crit;
+        }
+        return new Test<>(pred);
+    }
+
+    @Override
+    public Criterion<E> and(Predicate<? super E> other) {
+        return new And<>(flatten(this, of(other), And.class));
+    }
+
+    @Override
+    public Criterion<E> or(Predicate<? super E> other) {
+        return new Or<>(flatten(this, of(other), Or.class));
+    }
+
+    @Override
+    public Criterion<E> negate() {
+        return new Not<>(this);
+    }
+
+    /**
+     * Один листок, рівнозначний "this and other", або null, якщо так
+     * об'єднати не можна. Використовується CriterionOptimizer.simplify.
+     */
+    Criterion<E> mergeAnd(Criterion<E> other) {
+        return null;
+    }
+
+    /**
+     * Один листок, рівнозначний "this or other", або null.
+     */
+    Criterion<E> mergeOr(Criterion<E> other) {
+        return null;
+    }
+
+    // (a and b) and c зберігається як один вузол and(a, b, c)
+    private static <E> List<Criterion<E>> flatten(Criterion<E> left, Criterion<E> right, Class<?> kind) {
+        List<Criterion<E>> operands = new ArrayList<>();
+        addOperands(operands, left, kind);
+        addOperands(operands, right, kind);
+        return operands;
+    }
+
+    private static <E> void addOperands(List<Criterion<E>> operands, Criterion<E> c, Class<?> kind) {
+        if (kind.isInstance(c)) {
+            operands.addAll(((Junction<E>) c).operands());
+        } else {
+            operands.add(c);
+        }
+    }
+
+    /**
+     * Спільна основа And і Or: список операндів.
+     */
+    public abstract static class Junction<E> extends Criterion<E> {
+
+        private final List<Criterion<E>> operands;
+
+        Junction(List<Criterion<E>> operands) {
+            this.operands = Collections.unmodifiableList(new ArrayList<>(operands));
+        }
+
+        public List<Criterion<E>> operands() {
+            return operands;
+        }
+    }
+
+    public static class And<E> extends Junction<E> {
+
+        And(List<Criterion<E>> operands) {
+            super(operands);
+        }
+
+        @Override
+        public boolean test(E e) {
+            for (Criterion<E> c : operands()) {
+                if (!c.test(e)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public String toString() {
+            return "and" + operands();
+        }
+    }
+
+    public static final class Or<E> extends Junction<E> {
+
+        Or(List<Criterion<E>> operands) {
+            super(operands);
+        }
+
+        @Override
+        public boolean test(E e) {
+            for (Criterion<E> c : operands()) {
+                if (c.test(e)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public String toString() {
+            return "or" + operands();
+        }
+    }
+
+    public static final class Not<E> extends Criterion<E> {
+
+        private final Criterion<E> operand;
+
+        Not(Criterion<E> operand) {
+            this.operand = operand;
+        }
+
+        public Criterion<E> operand() {
+            return operand;
+        }
+
+        @Override
+        public boolean test(E e) {
+            return !operand.test(e);
+        }
+
+        @Override
+        public String toString() {
+            return "not(" + operand + ")";
+        }
+    }
+
+    /**
+     * Довільний Predicate, про який відомо лише те, що його можна викликати.
+     */
+    public static final class Test<E> extends Criterion<E> {
+
+        private final Predicate<? super E> pred;
+
+        Test(Predicate<? super E> pred) {
+            this.pred = pred;
+        }
+
+        @Override
+        public boolean test(E e) {
+            return pred.test(e);
+        }
+
+        @Override
+        public String toString() {
+            return "test(" + pred + ")";
+        }
+    }
+}
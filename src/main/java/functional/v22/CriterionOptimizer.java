@@ -0,0 +1,229 @@
+package functional.v22;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * Переписує дерево Criterion у дешевше рівнозначне: прибирає подвійне
+ * заперечення, зливає вкладені and/or, об'єднує листки одного виду
+ * (кілька getColorCriterion в один набір кольорів) і, за бажанням, замінює
+ * and на вузол, який під час роботи міряє вартість і вибірковість операндів
+ * та першими перевіряє найдешевші й найвибірковіші. Переставляти він може
+ * лише відомі листки CarCriterion; довільні Predicate лишаються там, де
+ * їх поставив автор (див. AdaptiveAnd).
+ */
+public class CriterionOptimizer {
+
+    public static <E> Criterion<E> simplify(Predicate<? super E> pred) {
+        Criterion<E> crit = Criterion.of(pred);
+        if (crit instanceof Criterion.Not) {
+            Criterion<E> operand = simplify(((Criterion.Not<E>) crit).operand());
+            if (operand instanceof Criterion.Not) {
+                return ((Criterion.Not<E>) operand).operand();
+            }
+            return operand.negate();
+        }
+        if (crit instanceof Criterion.Junction) {
+            boolean and = crit instanceof Criterion.And;
+            List<Criterion<E>> operands = new ArrayList<>();
+            for (Criterion<E> operand : ((Criterion.Junction<E>) crit).operands()) {
+                Criterion<E> simple = simplify(operand);
+                if (and && simple instanceof Criterion.And || !and && simple instanceof Criterion.Or) {
+                    for (Criterion<E> nested : ((Criterion.Junction<E>) simple).operands()) {
+                        merge(operands, nested, and);
+                    }
+                } else {
+                    merge(operands, simple, and);
+                }
+            }
+            if (operands.size() == 1) {
+                return operands.get(0);
+            }
+            return and ? new Criterion.And<>(operands) : new Criterion.Or<>(operands);
+        }
+        return crit;
+    }
+
+    private static <E> void merge(List<Criterion<E>> operands, Criterion<E> next, boolean and) {
+        for (int i = 0; i < operands.size(); i++) {
+            Criterion<E> merged = and ? operands.get(i).mergeAnd(next) : operands.get(i).mergeOr(next);
+            if (merged != null) {
+                operands.set(i, merged);
+                return;
+            }
+        }
+        operands.add(next);
+    }
+
+    /**
+     * simplify, після якого кожен and перевіряє операнди в порядку, що
+     * підлаштовується під дані.
+     */
+    public static <E> Criterion<E> adaptive(Predicate<? super E> pred) {
+        return adapt(simplify(pred));
+    }
+
+    private static <E> Criterion<E> adapt(Criterion<E> crit) {
+        if (crit instanceof Criterion.Not) {
+            return adapt(((Criterion.Not<E>) crit).operand()).negate();
+        }
+        if (crit instanceof Criterion.Junction) {
+            List<Criterion<E>> operands = new ArrayList<>();
+            for (Criterion<E> operand : ((Criterion.Junction<E>) crit).operands()) {
+                operands.add(adapt(operand));
+            }
+            return crit instanceof Criterion.And ? new AdaptiveAnd<>(operands) : new Criterion.Or<>(operands);
+        }
+        return crit;
+    }
+
+    /**
+     * and, що раз на SAMPLE_EVERY перевірок міряє час і частку true своїх
+     * операндів, а раз на REORDER_EVERY перевірок сортує їх за
+     * вартість / (1 - частка true).
+     * Переставляються й міряються без короткого замикання лише операнди, про
+     * які відомо, що вони без побічних ефектів і не кидають винятків: листки
+     * CarCriterion та not/and/or лише з них. Непрозорий Test (і все, що його
+     * містить) лишається на своєму місці й обчислюється так само, як у
+     * звичайному and, бо він може покладатися на попередні операнди, як
+     * c.getPassengers() != null перед перевіркою пасажирів. Тож переставляти
+     * можна лише всередині відрізків між такими операндами.
+     * Лічильники без синхронізації: при паралельному використанні вони
+     * приблизні, що для вибору порядку не важливо, а сам порядок
+     * публікується через volatile масив.
+     */
+    static final class AdaptiveAnd<E> extends Criterion.And<E> {
+
+        private static final int SAMPLE_EVERY = 16;
+        private static final int REORDER_EVERY = 4096;
+
+        private final Criterion<E>[] operands;
+        private final boolean[] movable;
+        private final long[] sampled;
+        private final long[] passed;
+        private final long[] nanos;
+        private volatile int[] order;
+        private long tests;
+
+        AdaptiveAnd(List<Criterion<E>> operands) {
+            super(operands);
+            @SuppressWarnings("unchecked")
+            Criterion<E>[] array = (Criterion<E>[]) operands.toArray(new Criterion<?>[0]);
+            this.operands = array;
+            this.movable = new boolean[array.length];
+            this.sampled = new long[array.length];
+            this.passed = new long[array.length];
+            this.nanos = new long[array.length];
+            int[] initial = new int[array.length];
+            for (int i = 0; i < initial.length; i++) {
+                initial[i] = i;
+                movable[i] = CarCriterion.isKnownTree(array[i]);
+            }
+            this.order = initial;
+        }
+
+        @Override
+        public boolean test(E e) {
+            long n = ++tests;
+            if (n % REORDER_EVERY == 0) {
+                reorder();
+            }
+            int[] current = order;
+            if (n % SAMPLE_EVERY == 0) {
+                return measure(e, current);
+            }
+            for (int i : current) {
+                if (!operands[i].test(e)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        // чисті операнди відрізка обчислюються всі, але до наступного
+        // непрозорого доходить лише те, що дійшло б і в звичайному and
+        private boolean measure(E e, int[] current) {
+            boolean result = true;
+            for (int i : current) {
+                if (!movable[i]) {
+                    if (!result || !operands[i].test(e)) {
+                        return false;
+                    }
+                    continue;
+                }
+                long start = System.nanoTime();
+                boolean pass = operands[i].test(e);
+                nanos[i] += System.nanoTime() - start;
+                sampled[i]++;
+                if (pass) {
+                    passed[i]++;
+                } else {
+                    result = false;
+                }
+            }
+            return result;
+        }
+
+        private void reorder() {
+            double[] rank = new double[operands.length];
+            for (int i = 0; i < operands.length; i++) {
+                long s = Math.max(sampled[i], 1);
+                double cost = (double) nanos[i] / s;
+                double rejected = 1.0 - (double) passed[i] / s;
+                rank[i] = cost / Math.max(rejected, 1e-6);
+            }
+            int[] next = order.clone();
+            int from = 0;
+            while (from < next.length) {
+                if (!movable[next[from]]) {
+                    from++;
+                    continue;
+                }
+                int to = from;
+                while (to < next.length && movable[next[to]]) {
+                    to++;
+                }
+                int[] run = Arrays.stream(next, from, to).boxed()
+                        .sorted((a, b) -> Double.compare(rank[a], rank[b]))
+                        .mapToInt(Integer::intValue)
+                        .toArray();
+                System.arraycopy(run, 0, next, from, run.length);
+                from = to;
+            }
+            order = next;
+        }
+
+        @Override
+        public String toString() {
+            List<Criterion<E>> current = new ArrayList<>();
+            for (int i : order) {
+                current.add(operands[i]);
+            }
+            return "adaptive and" + current;
+        }
+    }
+
+    public static void main(String[] args) {
+        Predicate<Car> withDoctor = c -> c.getPassengers().stream().anyMatch(p -> p.startsWith("Dr."));
+        Predicate<Car> deep = Criterion.of(withDoctor)
+                .and(Car.getColorCriterion("Red").or(Car.getColorCriterion("Black")))
+                .and(Car.getGasLevelCarCriterion(3))
+                .and(Car.getGasLevelCarCriterion(5).negate().negate())
+                .and(Car.getFourPassengerCriterion().negate());
+        System.out.println(deep);
+        System.out.println(simplify(deep));
+
+        List<Car> cars = new ArrayList<>();
+        String[] colors = {"Red", "Black", "Green", "Octarine"};
+        for (int i = 0; i < 200_000; i++) {
+            cars.add(Car.withGasColorPassengers(i % 10, colors[i % 4], "P" + i, i % 3 == 0 ? "Dr. Mahmoud" : "Anne"));
+        }
+        Criterion<Car> adaptive = adaptive(deep);
+        System.out.println(adaptive);
+        System.out.println(CarScratch.getByCriterion(cars, adaptive).size() + " == "
+                + CarScratch.getByCriterion(cars, deep).size());
+        System.out.println(adaptive);
+    }
+}
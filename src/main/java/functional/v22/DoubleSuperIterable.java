@@ -0,0 +1,88 @@
+package functional.v22;
+
+import java.util.DoubleSummaryStatistics;
+import java.util.OptionalDouble;
+import java.util.function.Consumer;
+import java.util.function.DoubleConsumer;
+import java.util.function.DoublePredicate;
+import java.util.function.DoubleUnaryOperator;
+import java.util.stream.DoubleStream;
+
+/**
+ * SuperIterable для значень double: значення передаються далі без упаковки в
+ * Double, а збираються в масив double[], а не в List<Double>.
+ */
+public class DoubleSuperIterable extends PrimitiveSuperIterable<DoubleConsumer, DoubleSummaryStatistics> {
+
+    DoubleSuperIterable(Consumer<DoubleConsumer> self) {
+        super(self, DoubleSummaryStatistics::new);
+    }
+
+    public static DoubleSuperIterable of(double... values) {
+        return new DoubleSuperIterable(action -> {
+            for (double v : values) {
+                action.accept(v);
+            }
+        });
+    }
+
+    public DoubleSuperIterable map(DoubleUnaryOperator op) {
+        return new DoubleSuperIterable(action -> self.accept(v -> action.accept(op.applyAsDouble(v))));
+    }
+
+    public DoubleSuperIterable filter(DoublePredicate pred) {
+        return new DoubleSuperIterable(action -> self.accept(v -> {
+            if (pred.test(v)) {
+                action.accept(v);
+            }
+        }));
+    }
+
+    public double[] toArray() {
+        DoubleStream.Builder buffer = DoubleStream.builder();
+        self.accept(buffer);
+        return buffer.build().toArray();
+    }
+
+    public long count() {
+        return summaryStatistics().getCount();
+    }
+
+    public double sum() {
+        return summaryStatistics().getSum();
+    }
+
+    public OptionalDouble min() {
+        DoubleSummaryStatistics stats = summaryStatistics();
+        return stats.getCount() == 0 ? OptionalDouble.empty() : OptionalDouble.of(stats.getMin());
+    }
+
+    public OptionalDouble max() {
+        DoubleSummaryStatistics stats = summaryStatistics();
+        return stats.getCount() == 0 ? OptionalDouble.empty() : OptionalDouble.of(stats.getMax());
+    }
+
+    public OptionalDouble average() {
+        DoubleSummaryStatistics stats = summaryStatistics();
+        return stats.getCount() == 0 ? OptionalDouble.empty() : OptionalDouble.of(stats.getAverage());
+    }
+
+    /**
+     * Гістограма з buckets однакових кошиків на проміжку [from, to): кошик i
+     * рахує значення з [from + i * width, from + (i + 1) * width), значення
+     * поза проміжком (і NaN) пропускаються.
+     */
+    public long[] histogram(double from, double to, int buckets) {
+        if (!(from < to) || buckets <= 0) {
+            throw new IllegalArgumentException("bad histogram range [" + from + ", " + to + ") / " + buckets);
+        }
+        long[] counts = new long[buckets];
+        double scale = buckets / (to - from);
+        self.accept(v -> {
+            if (v >= from && v < to) {
+                counts[Math.min((int) ((v - from) * scale), buckets - 1)]++;
+            }
+        });
+        return counts;
+    }
+}
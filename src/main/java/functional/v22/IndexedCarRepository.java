@@ -0,0 +1,148 @@
+package functional.v22;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Predicate;
+
+/**
+ * Незмінний набір машин з бітовими індексами за кольором, рівнем пального
+ * і кількістю пасажирів. Критерії з Car (або CarCriterion), складені через
+ * and/or/negate, обчислюються як AND/OR/ANDNOT над стиснутими бітовими
+ * картами; решта предикатів перевіряється лише на вже відібраних рядках.
+ */
+public class IndexedCarRepository {
+
+    private final List<Car> cars;
+    private final CompressedBitmap all;
+    private final Map<String, CompressedBitmap> byColor = new HashMap<>();
+    private final TreeMap<Integer, CompressedBitmap> byGasLevel = new TreeMap<>();
+    private final Map<Integer, CompressedBitmap> byPassengerCount = new HashMap<>();
+
+    public IndexedCarRepository(Iterable<Car> cars) {
+        List<Car> rows = new ArrayList<>();
+        Map<String, CompressedBitmap.Builder> colors = new HashMap<>();
+        Map<Integer, CompressedBitmap.Builder> gasLevels = new HashMap<>();
+        Map<Integer, CompressedBitmap.Builder> passengerCounts = new HashMap<>();
+        for (Car c : cars) {
+            int row = rows.size();
+            rows.add(c);
+            colors.computeIfAbsent(c.getColor(), k -> new CompressedBitmap.Builder()).add(row);
+            gasLevels.computeIfAbsent(c.getGasLevel(), k -> new CompressedBitmap.Builder()).add(row);
+            passengerCounts.computeIfAbsent(c.getPassengers().size(), k -> new CompressedBitmap.Builder()).add(row);
+        }
+        this.cars = Collections.unmodifiableList(rows);
+        this.all = CompressedBitmap.range(0, rows.size());
+        colors.forEach((k, b) -> byColor.put(k, b.build()));
+        gasLevels.forEach((k, b) -> byGasLevel.put(k, b.build()));
+        passengerCounts.forEach((k, b) -> byPassengerCount.put(k, b.build()));
+    }
+
+    public int size() {
+        return cars.size();
+    }
+
+    public List<Car> getByCriterion(Predicate<Car> crit) {
+        List<Car> output = new ArrayList<>();
+        select(crit).forEach(row -> output.add(cars.get(row)));
+        return output;
+    }
+
+    public int count(Predicate<Car> crit) {
+        return select(crit).cardinality();
+    }
+
+    /**
+     * Рядки, що відповідають критерію.
+     */
+    public CompressedBitmap select(Predicate<Car> crit) {
+        return select(Criterion.of(crit), all);
+    }
+
+    // candidates - рядки, поза якими відповідь нікого не цікавить; непрозорі
+    // предикати перевіряються лише на них
+    private CompressedBitmap select(Criterion<Car> crit, CompressedBitmap candidates) {
+        if (crit instanceof CarCriterion.ColorIn) {
+            CompressedBitmap result = CompressedBitmap.EMPTY;
+            for (String color : ((CarCriterion.ColorIn) crit).colors()) {
+                result = result.or(byColor.getOrDefault(color, CompressedBitmap.EMPTY));
+            }
+            return result;
+        }
+        if (crit instanceof CarCriterion.GasLevelAtLeast) {
+            CompressedBitmap result = CompressedBitmap.EMPTY;
+            for (CompressedBitmap level : byGasLevel.tailMap(((CarCriterion.GasLevelAtLeast) crit).threshold()).values()) {
+                result = result.or(level);
+            }
+            return result;
+        }
+        if (crit instanceof CarCriterion.PassengerCount) {
+            return byPassengerCount.getOrDefault(((CarCriterion.PassengerCount) crit).count(), CompressedBitmap.EMPTY);
+        }
+        if (crit instanceof Criterion.Not) {
+            return candidates.andNot(select(((Criterion.Not<Car>) crit).operand(), candidates));
+        }
+        if (crit instanceof Criterion.And) {
+            // спершу індексовані операнди, щоб непрозорі перевіряли менше рядків
+            List<Criterion<Car>> opaque = new ArrayList<>();
+            CompressedBitmap result = candidates;
+            for (Criterion<Car> operand : ((Criterion.And<Car>) crit).operands()) {
+                if (CarCriterion.isKnownTree(operand)) {
+                    result = result.and(select(operand, result));
+                } else {
+                    opaque.add(operand);
+                }
+            }
+            for (Criterion<Car> operand : opaque) {
+                result = result.and(select(operand, result));
+            }
+            return result;
+        }
+        if (crit instanceof Criterion.Or) {
+            CompressedBitmap result = CompressedBitmap.EMPTY;
+            for (Criterion<Car> operand : ((Criterion.Or<Car>) crit).operands()) {
+                result = result.or(select(operand, candidates.andNot(result)));
+            }
+            return result;
+        }
+        return scan(crit, candidates);
+    }
+
+    private CompressedBitmap scan(Predicate<Car> crit, CompressedBitmap candidates) {
+        CompressedBitmap.Builder result = new CompressedBitmap.Builder();
+        candidates.forEach(row -> {
+            if (crit.test(cars.get(row))) {
+                result.add(row);
+            }
+        });
+        return result.build();
+    }
+
+    public static void main(String[] args) {
+        List<Car> cars = new ArrayList<>();
+        String[] colors = {"Red", "Black", "Green", "Octarine"};
+        for (int i = 0; i < 1_000_000; i++) {
+            String[] passengers = new String[1 + i % 5];
+            Arrays.fill(passengers, "P" + i);
+            cars.add(Car.withGasColorPassengers(i % 10, colors[i % 7 % 4], passengers));
+        }
+        IndexedCarRepository repository = new IndexedCarRepository(cars);
+
+        Predicate<Car> redFourPassengers = Car.getColorCriterion("Red").and(Car.getFourPassengerCriterion());
+        Predicate<Car> blackOrFull = Car.getColorCriterion("Black").or(Car.getGasLevelCarCriterion(9));
+        Predicate<Car> notLevel7 = Car.getGasLevelCarCriterion(7).negate();
+        Predicate<Car> greenWithP2 = Car.getColorCriterion("Green").and(c -> c.getPassengers().contains("P2"));
+
+        for (Predicate<Car> crit : Arrays.asList(redFourPassengers, blackOrFull, notLevel7, greenWithP2)) {
+            long start = System.nanoTime();
+            int count = repository.count(crit);
+            long micros = (System.nanoTime() - start) / 1000;
+            System.out.println(crit + ": " + count + " cars in " + micros + " us (scan: "
+                    + CarScratch.getByCriterion(cars, crit).size() + ")");
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package functional.v22;
+
+import java.util.IntSummaryStatistics;
+import java.util.OptionalDouble;
+import java.util.OptionalInt;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+import java.util.function.IntPredicate;
+import java.util.function.IntUnaryOperator;
+import java.util.stream.IntStream;
+
+/**
+ * SuperIterable для значень int: значення передаються далі без упаковки в
+ * Integer, а збираються в масив int[], а не в List<Integer>.
+ */
+public class IntSuperIterable extends PrimitiveSuperIterable<IntConsumer, IntSummaryStatistics> {
+
+    IntSuperIterable(Consumer<IntConsumer> self) {
+        super(self, IntSummaryStatistics::new);
+    }
+
+    public static IntSuperIterable of(int... values) {
+        return new IntSuperIterable(action -> {
+            for (int v : values) {
+                action.accept(v);
+            }
+        });
+    }
+
+    public IntSuperIterable map(IntUnaryOperator op) {
+        return new IntSuperIterable(action -> self.accept(v -> action.accept(op.applyAsInt(v))));
+    }
+
+    public IntSuperIterable filter(IntPredicate pred) {
+        return new IntSuperIterable(action -> self.accept(v -> {
+            if (pred.test(v)) {
+                action.accept(v);
+            }
+        }));
+    }
+
+    public int[] toArray() {
+        IntStream.Builder buffer = IntStream.builder();
+        self.accept(buffer);
+        return buffer.build().toArray();
+    }
+
+    public long count() {
+        return summaryStatistics().getCount();
+    }
+
+    public long sum() {
+        return summaryStatistics().getSum();
+    }
+
+    public OptionalInt min() {
+        IntSummaryStatistics stats = summaryStatistics();
+        return stats.getCount() == 0 ? OptionalInt.empty() : OptionalInt.of(stats.getMin());
+    }
+
+    public OptionalInt max() {
+        IntSummaryStatistics stats = summaryStatistics();
+        return stats.getCount() == 0 ? OptionalInt.empty() : OptionalInt.of(stats.getMax());
+    }
+
+    public OptionalDouble average() {
+        IntSummaryStatistics stats = summaryStatistics();
+        return stats.getCount() == 0 ? OptionalDouble.empty() : OptionalDouble.of(stats.getAverage());
+    }
+
+    /**
+     * Кількість входжень кожного значення з проміжку [from, to]: елемент i
+     * масиву рахує значення from + i, значення поза проміжком пропускаються.
+     */
+    public long[] histogram(int from, int to) {
+        if (from > to) {
+            throw new IllegalArgumentException("from > to: " + from + " > " + to);
+        }
+        long[] counts = new long[Math.toIntExact((long) to - from + 1)];
+        self.accept(v -> {
+            if (v >= from && v <= to) {
+                counts[v - from]++;
+            }
+        });
+        return counts;
+    }
+}
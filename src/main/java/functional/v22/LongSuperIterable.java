@@ -0,0 +1,87 @@
+package functional.v22;
+
+import java.util.LongSummaryStatistics;
+import java.util.OptionalDouble;
+import java.util.OptionalLong;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+import java.util.function.LongPredicate;
+import java.util.function.LongUnaryOperator;
+import java.util.stream.LongStream;
+
+/**
+ * SuperIterable для значень long: значення передаються далі без упаковки в
+ * Long, а збираються в масив long[], а не в List<Long>.
+ */
+public class LongSuperIterable extends PrimitiveSuperIterable<LongConsumer, LongSummaryStatistics> {
+
+    LongSuperIterable(Consumer<LongConsumer> self) {
+        super(self, LongSummaryStatistics::new);
+    }
+
+    public static LongSuperIterable of(long... values) {
+        return new LongSuperIterable(action -> {
+            for (long v : values) {
+                action.accept(v);
+            }
+        });
+    }
+
+    public LongSuperIterable map(LongUnaryOperator op) {
+        return new LongSuperIterable(action -> self.accept(v -> action.accept(op.applyAsLong(v))));
+    }
+
+    public LongSuperIterable filter(LongPredicate pred) {
+        return new LongSuperIterable(action -> self.accept(v -> {
+            if (pred.test(v)) {
+                action.accept(v);
+            }
+        }));
+    }
+
+    public long[] toArray() {
+        LongStream.Builder buffer = LongStream.builder();
+        self.accept(buffer);
+        return buffer.build().toArray();
+    }
+
+    public long count() {
+        return summaryStatistics().getCount();
+    }
+
+    public long sum() {
+        return summaryStatistics().getSum();
+    }
+
+    public OptionalLong min() {
+        LongSummaryStatistics stats = summaryStatistics();
+        return stats.getCount() == 0 ? OptionalLong.empty() : OptionalLong.of(stats.getMin());
+    }
+
+    public OptionalLong max() {
+        LongSummaryStatistics stats = summaryStatistics();
+        return stats.getCount() == 0 ? OptionalLong.empty() : OptionalLong.of(stats.getMax());
+    }
+
+    public OptionalDouble average() {
+        LongSummaryStatistics stats = summaryStatistics();
+        return stats.getCount() == 0 ? OptionalDouble.empty() : OptionalDouble.of(stats.getAverage());
+    }
+
+    /**
+     * Кількість входжень кожного значення з проміжку [from, to]: елемент i
+     * масиву рахує значення from + i, значення поза проміжком пропускаються.
+     */
+    public long[] histogram(long from, long to) {
+        if (from > to) {
+            throw new IllegalArgumentException("from > to: " + from + " > " + to);
+        }
+        long[] counts = new long[Math.toIntExact(Math.addExact(Math.subtractExact(to, from), 1))];
+        self.accept(v -> {
+            if (v >= from && v <= to) {
+                counts[(int) (v - from)]++;
+            }
+        });
+        return counts;
+    }
+}
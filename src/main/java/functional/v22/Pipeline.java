@@ -0,0 +1,249 @@
+package functional.v22;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+import java.util.Spliterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Consumer;
+
+/**
+ * Лінивий конвеєр: джерело та злита ланка від елемента джерела до
+ * результату. Нічого не обчислюється, доки forEach або iterator() не почнуть
+ * тягнути елементи з джерела.
+ */
+final class Pipeline<S, E> {
+
+    // менші шматки не варті окремої задачі fork/join
+    private static final int MIN_CHUNK = 1024;
+
+    private final Iterable<S> source;
+    private final Stage<S, E> stage;
+    // характеристики Spliterator джерела, які скинула хоча б одна ланка
+    private final int cleared;
+    // limit і takeWhile рахують елементи в межах одного проходу, тому такий
+    // конвеєр не можна ділити на частини
+    private final boolean stateful;
+
+    private Pipeline(Iterable<S> source, Stage<S, E> stage, int cleared, boolean stateful) {
+        this.source = source;
+        this.stage = stage;
+        this.cleared = cleared;
+        this.stateful = stateful;
+    }
+
+    static <S> Pipeline<S, S> of(Iterable<S> source) {
+        return new Pipeline<>(source, Stage.identity(), 0, false);
+    }
+
+    <F> Pipeline<S, F> then(Stage<E, F> next, int clears) {
+        return new Pipeline<>(source, stage.andThen(next), cleared | clears, stateful);
+    }
+
+    <F> Pipeline<S, F> thenStateful(Stage<E, F> next, int clears) {
+        return new Pipeline<>(source, stage.andThen(next), cleared | clears, true);
+    }
+
+    boolean isSource() {
+        return stage == Stage.IDENTITY;
+    }
+
+    /**
+     * Проходить джерело, доки воно не скінчиться або якась ланка не попросить
+     * зупинитися.
+     */
+    void forEach(Sink<? super E> action) {
+        Sink<S> sink = stage.wrap(action);
+        Iterator<S> it = source.iterator();
+        while (!sink.cancellationRequested() && it.hasNext()) {
+            sink.accept(it.next());
+        }
+        sink.end();
+    }
+
+    /**
+     * Паралельно можна ділити лише джерела з довільним доступом: масиви
+     * (через Arrays.asList) та списки на кшталт ArrayList.
+     */
+    boolean isSplittable() {
+        return !stateful && source instanceof List && source instanceof RandomAccess;
+    }
+
+    List<E> toList() {
+        List<E> result = new ArrayList<>();
+        forEach(result::add);
+        return result;
+    }
+
+    /**
+     * Викликає action одночасно з кількох потоків, порядок не гарантується.
+     */
+    @SuppressWarnings("unchecked")
+    void forEachParallel(Consumer<? super E> action) {
+        List<S> list = (List<S>) source;
+        runChunks(list.size(), (chunk, from, to) -> {
+            Sink<S> sink = stage.wrap(action::accept);
+            for (int i = from; i < to; i++) {
+                sink.accept(list.get(i));
+            }
+            sink.end();
+        });
+    }
+
+    /**
+     * Кожен шматок джерела проходить злиті ланки у своїй задачі. Якщо ordered,
+     * результати шматків зшиваються в порядку джерела, інакше додаються до
+     * результату одразу, як шматок готовий.
+     */
+    @SuppressWarnings("unchecked")
+    List<E> toListParallel(boolean ordered) {
+        List<S> list = (List<S>) source;
+        if (!ordered) {
+            List<E> result = new ArrayList<>();
+            runChunks(list.size(), (chunk, from, to) -> {
+                List<E> part = collect(list, from, to);
+                synchronized (result) {
+                    result.addAll(part);
+                }
+            });
+            return result;
+        }
+        @SuppressWarnings("unchecked")
+        List<E>[] parts = (List<E>[]) new List<?>[chunkCount(list.size())];
+        runChunks(list.size(), (chunk, from, to) -> parts[chunk] = collect(list, from, to));
+        int total = 0;
+        for (List<E> part : parts) {
+            total += part.size();
+        }
+        List<E> result = new ArrayList<>(total);
+        for (List<E> part : parts) {
+            result.addAll(part);
+        }
+        return result;
+    }
+
+    private List<E> collect(List<S> list, int from, int to) {
+        List<E> part = new ArrayList<>();
+        Sink<S> sink = stage.wrap(part::add);
+        for (int i = from; i < to; i++) {
+            sink.accept(list.get(i));
+        }
+        sink.end();
+        return part;
+    }
+
+    private static int chunkSize(int size) {
+        int target = size / (ForkJoinPool.getCommonPoolParallelism() * 4);
+        return Math.max(MIN_CHUNK, target);
+    }
+
+    private static int chunkCount(int size) {
+        int chunkSize = chunkSize(size);
+        return Math.max(1, (size + chunkSize - 1) / chunkSize);
+    }
+
+    private static void runChunks(int size, ChunkAction action) {
+        int chunkSize = chunkSize(size);
+        int chunks = chunkCount(size);
+        if (chunks == 1) {
+            action.run(0, 0, size);
+        } else {
+            ForkJoinPool.commonPool().invoke(new ChunkTask(action, 0, chunks, chunkSize, size));
+        }
+    }
+
+    @FunctionalInterface
+    private interface ChunkAction {
+
+        void run(int chunk, int from, int to);
+    }
+
+    /**
+     * Ділить проміжок шматків навпіл, доки не лишиться один; вільні потоки
+     * пулу крадуть ще не розпочаті половини.
+     */
+    private static final class ChunkTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final ChunkAction action;
+        private final int firstChunk;
+        private final int lastChunk;
+        private final int chunkSize;
+        private final int size;
+
+        ChunkTask(ChunkAction action, int firstChunk, int lastChunk, int chunkSize, int size) {
+            this.action = action;
+            this.firstChunk = firstChunk;
+            this.lastChunk = lastChunk;
+            this.chunkSize = chunkSize;
+            this.size = size;
+        }
+
+        @Override
+        protected void compute() {
+            if (lastChunk - firstChunk == 1) {
+                int from = firstChunk * chunkSize;
+                action.run(firstChunk, from, Math.min(size, from + chunkSize));
+            } else {
+                int middle = (firstChunk + lastChunk) >>> 1;
+                invokeAll(new ChunkTask(action, firstChunk, middle, chunkSize, size),
+                        new ChunkTask(action, middle, lastChunk, chunkSize, size));
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    Spliterator<E> spliterator() {
+        if (isSource()) {
+            return (Spliterator<E>) source.spliterator();
+        }
+        return new PipelineSpliterator<>(source.spliterator(), stage, cleared, stateful);
+    }
+
+    @SuppressWarnings("unchecked")
+    Iterator<E> iterator() {
+        if (isSource()) {
+            return (Iterator<E>) source.iterator();
+        }
+        return new Iterator<E>() {
+            private final Iterator<S> upstream = source.iterator();
+            // тримає результати одного елемента джерела (більше одного лише після flatMap)
+            // або пакет з flatMapChunked
+            private final List<E> buffer = new ArrayList<>();
+            private final Sink<S> sink = stage.wrap(buffer::add);
+            private int position;
+            private boolean ended;
+
+            private boolean fill() {
+                while (position == buffer.size() && !ended) {
+                    buffer.clear();
+                    position = 0;
+                    if (!sink.cancellationRequested() && upstream.hasNext()) {
+                        sink.accept(upstream.next());
+                    } else {
+                        ended = true;
+                        sink.end();
+                    }
+                }
+                return position < buffer.size();
+            }
+
+            @Override
+            public boolean hasNext() {
+                return fill();
+            }
+
+            @Override
+            public E next() {
+                if (!fill()) {
+                    throw new NoSuchElementException();
+                }
+                return buffer.get(position++);
+            }
+        };
+    }
+}
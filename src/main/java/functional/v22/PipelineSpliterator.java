@@ -0,0 +1,112 @@
+package functional.v22;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * Spliterator над злитим конвеєром: ділиться так само, як spliterator
+ * джерела, а кожна частина проганяє свої елементи через ті самі ланки.
+ * Характеристики джерела зберігаються, крім тих, які ланки скидають
+ * (filter і flatMap скидають SIZED/SUBSIZED, map - DISTINCT/SORTED/NONNULL).
+ */
+final class PipelineSpliterator<S, E> implements Spliterator<E> {
+
+    private final Spliterator<S> upstream;
+    private final Stage<S, E> stage;
+    private final int cleared;
+    private final boolean stateful;
+    // результати одного елемента джерела для tryAdvance
+    private final List<E> buffer = new ArrayList<>();
+    private int position;
+    // один ланцюжок на весь обхід, щоб limit і takeWhile не починали
+    // рахувати заново при переході від tryAdvance до forEachRemaining
+    private Consumer<? super E> target;
+    private Sink<S> sink;
+    private boolean ended;
+
+    PipelineSpliterator(Spliterator<S> upstream, Stage<S, E> stage, int cleared, boolean stateful) {
+        this.upstream = upstream;
+        this.stage = stage;
+        this.cleared = cleared;
+        this.stateful = stateful;
+    }
+
+    private Sink<S> sink(Consumer<? super E> newTarget) {
+        target = newTarget;
+        if (sink == null) {
+            sink = stage.wrap(e -> target.accept(e));
+        }
+        return sink;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super E> action) {
+        Sink<S> bufferSink = sink(buffer::add);
+        while (position == buffer.size()) {
+            buffer.clear();
+            position = 0;
+            if (ended) {
+                return false;
+            }
+            if (bufferSink.cancellationRequested() || !upstream.tryAdvance(bufferSink)) {
+                ended = true;
+                bufferSink.end();
+            }
+        }
+        action.accept(buffer.get(position++));
+        return true;
+    }
+
+    @Override
+    public void forEachRemaining(Consumer<? super E> action) {
+        while (position < buffer.size()) {
+            action.accept(buffer.get(position++));
+        }
+        if (ended) {
+            return;
+        }
+        ended = true;
+        Sink<S> actionSink = sink(action);
+        if (stateful) {
+            while (!actionSink.cancellationRequested() && upstream.tryAdvance(actionSink)) {
+                // кожен крок перевіряє, чи не досягнуто limit або takeWhile
+            }
+        } else {
+            upstream.forEachRemaining(actionSink);
+        }
+        actionSink.end();
+    }
+
+    @Override
+    public Spliterator<E> trySplit() {
+        // після початку обходу частина елементів може чекати в пакетах ланок
+        if (stateful || sink != null) {
+            return null;
+        }
+        Spliterator<S> prefix = upstream.trySplit();
+        return prefix == null ? null : new PipelineSpliterator<>(prefix, stage, cleared, false);
+    }
+
+    @Override
+    public long estimateSize() {
+        return upstream.estimateSize() + (buffer.size() - position);
+    }
+
+    @Override
+    public int characteristics() {
+        return upstream.characteristics() & ~cleared;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Comparator<? super E> getComparator() {
+        if (!hasCharacteristics(SORTED)) {
+            throw new IllegalStateException();
+        }
+        // SORTED лишається тільки після filter, тож елементи мають тип джерела
+        return (Comparator<? super E>) upstream.getComparator();
+    }
+}
@@ -0,0 +1,33 @@
+package functional.v22;
+
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Спільна основа Int/Long/DoubleSuperIterable: джерело, що передає значення
+ * споживачу C, і статистика S, яка сама є таким споживачем (як
+ * IntSummaryStatistics для IntConsumer). count, sum, min, max і average
+ * беруть свій результат зі статистики, але кожна з них проходить джерело
+ * заново; коли потрібні кілька одразу, один прохід дає summaryStatistics().
+ */
+public abstract class PrimitiveSuperIterable<C, S extends C> {
+
+    // проходить джерело і передає кожне значення споживачу
+    final Consumer<C> self;
+    private final Supplier<S> statistics;
+
+    PrimitiveSuperIterable(Consumer<C> self, Supplier<S> statistics) {
+        this.self = self;
+        this.statistics = statistics;
+    }
+
+    public void forEach(C action) {
+        self.accept(action);
+    }
+
+    public S summaryStatistics() {
+        S stats = statistics.get();
+        self.accept(stats);
+        return stats;
+    }
+}
@@ -0,0 +1,54 @@
+package functional.v22;
+
+import java.util.function.Consumer;
+
+/**
+ * Споживач ланки конвеєра, який може попросити більше не подавати йому
+ * елементів (limit, takeWhile, findFirst, anyMatch). Джерело і flatMap
+ * перевіряють це перед кожним наступним елементом. Наприкінці проходу
+ * кожна ланка отримує end(), щоб віддати далі накопичені пакети.
+ */
+@FunctionalInterface
+interface Sink<T> extends Consumer<T> {
+
+    default boolean cancellationRequested() {
+        return false;
+    }
+
+    /**
+     * Пакет з count елементів; масив після виклику належить тому, хто його
+     * передав, і буде заповнений знову.
+     */
+    @SuppressWarnings("unchecked")
+    default void acceptBatch(Object[] batch, int count) {
+        for (int i = 0; i < count && !cancellationRequested(); i++) {
+            accept((T) batch[i]);
+        }
+    }
+
+    default void end() {
+    }
+
+    /**
+     * Ланка без власного стану: приймає елементи через accept, а прохання
+     * зупинитися бере з наступної ланки.
+     */
+    static <T> Sink<T> chain(Sink<?> downstream, Consumer<T> accept) {
+        return new Sink<T>() {
+            @Override
+            public void accept(T t) {
+                accept.accept(t);
+            }
+
+            @Override
+            public boolean cancellationRequested() {
+                return downstream.cancellationRequested();
+            }
+
+            @Override
+            public void end() {
+                downstream.end();
+            }
+        };
+    }
+}
@@ -0,0 +1,24 @@
+package functional.v22;
+
+/**
+ * Одна ланка конвеєра SuperIterable: обгортає споживача наступної ланки
+ * споживачем свого входу. Послідовні ланки (map, filter, flatMap)
+ * зливаються через andThen в один ланцюжок, який проходить джерело за один
+ * раз без проміжних колекцій.
+ */
+@FunctionalInterface
+interface Stage<S, E> {
+
+    Sink<S> wrap(Sink<? super E> downstream);
+
+    default <F> Stage<S, F> andThen(Stage<E, F> next) {
+        return downstream -> wrap(next.wrap(downstream));
+    }
+
+    @SuppressWarnings("unchecked")
+    static <S> Stage<S, S> identity() {
+        return (Stage<S, S>) IDENTITY;
+    }
+
+    Stage<Object, Object> IDENTITY = downstream -> downstream;
+}
@@ -2,17 +2,78 @@ package functional.v22;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.IntSummaryStatistics;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Optional;
+import java.util.RandomAccess;
+import java.util.Spliterator;
+import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.function.Predicate;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToIntFunction;
+import java.util.function.ToLongFunction;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 public class SuperIterable<E> implements Iterable<E> {
 
-    private Iterable<E> self;
+    // характеристики джерела, які після flatMap уже не гарантуються: розмір,
+    // унікальність, сортування й відсутність null залежать від вкладених колекцій
+    private static final int FLAT_MAP_CLEARS = Spliterator.SIZED | Spliterator.SUBSIZED
+            | Spliterator.DISTINCT | Spliterator.SORTED | Spliterator.NONNULL;
+
+    // ланцюжок операцій виконується ліниво і за один прохід по джерелу,
+    // без копіювання проміжних результатів у нові списки
+    private final Pipeline<?, E> self;
+    // паралельний режим діє лише для джерел з довільним доступом,
+    // інші джерела проходяться послідовно
+    private final boolean parallel;
+    private final boolean ordered;
 
     public SuperIterable(Iterable<E> self) {
+        this(Pipeline.of(self), false, true);
+    }
+
+    private SuperIterable(Pipeline<?, E> self, boolean parallel, boolean ordered) {
         this.self = self;
+        this.parallel = parallel;
+        this.ordered = ordered;
+    }
+
+    @SafeVarargs
+    @SuppressWarnings("varargs")
+    public static <E> SuperIterable<E> of(E... elements) {
+        return new SuperIterable<>(Arrays.asList(elements));
+    }
+
+    private <F> SuperIterable<F> with(Pipeline<?, F> next) {
+        return new SuperIterable<>(next, parallel, ordered);
+    }
+
+    /**
+     * Наступні термінальні операції ділять джерело на шматки і обробляють їх
+     * у ForkJoinPool.commonPool(); toList() зшиває результат у порядку джерела.
+     */
+    public SuperIterable<E> parallel() {
+        return new SuperIterable<>(self, true, ordered);
+    }
+
+    public SuperIterable<E> sequential() {
+        return new SuperIterable<>(self, false, ordered);
+    }
+
+    /**
+     * Дозволяє паралельному toList() повертати елементи в довільному порядку,
+     * не чекаючи на попередні шматки.
+     */
+    public SuperIterable<E> unordered() {
+        return new SuperIterable<>(self, parallel, false);
+    }
+
+    public boolean isParallel() {
+        return parallel && self.isSplittable();
     }
 
     @Override
@@ -20,28 +81,223 @@ public class SuperIterable<E> implements Iterable<E> {
         return self.iterator();
     }
 
+    @Override
+    public Spliterator<E> spliterator() {
+        return self.spliterator();
+    }
+
+    /**
+     * Потік над тим самим конвеєром; паралельний, якщо викликано parallel().
+     */
+    public Stream<E> stream() {
+        return StreamSupport.stream(spliterator(), parallel);
+    }
+
+    public Stream<E> parallelStream() {
+        return StreamSupport.stream(spliterator(), true);
+    }
+
+    @Override
+    public void forEach(Consumer<? super E> action) {
+        if (isParallel()) {
+            self.forEachParallel(action);
+        } else {
+            self.forEach(action::accept);
+        }
+    }
+
+    public List<E> toList() {
+        return isParallel() ? self.toListParallel(ordered) : self.toList();
+    }
+
     public <F> SuperIterable<F> flatMap(Function<E, SuperIterable<F>> op) {
-        List<F> results = new ArrayList<>();
+        return with(self.then(
+                (Sink<? super F> down) -> Sink.chain(down, (E e) -> {
+                    // внутрішній SuperIterable теж перестає віддавати елементи,
+                    // щойно наступна ланка попросить зупинитися
+                    Iterator<F> inner = op.apply(e).iterator();
+                    while (!down.cancellationRequested() && inner.hasNext()) {
+                        down.accept(inner.next());
+                    }
+                }), FLAT_MAP_CLEARS));
+    }
 
-        self.forEach(e -> op.apply(e).forEach(f -> results.add(f)));
+    /**
+     * flatMap без обгортки SuperIterable на кожен елемент: внутрішні елементи
+     * складаються в один пакет на chunkSize елементів, який наступні ланки
+     * отримують через acceptBatch і який заповнюється знову. Тому
+     * findFirst/limit можуть прочитати наперед до chunkSize внутрішніх
+     * елементів.
+     */
+    public <F> SuperIterable<F> flatMapChunked(Function<E, ? extends Iterable<F>> op, int chunkSize) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("chunkSize: " + chunkSize);
+        }
+        return with(self.then((Sink<? super F> down) -> new ChunkSink<E, F>(down, chunkSize) {
+            @Override
+            public void accept(E e) {
+                for (F f : op.apply(e)) {
+                    if (!emit(f)) {
+                        return;
+                    }
+                }
+            }
+        }, FLAT_MAP_CLEARS));
+    }
 
-        return new SuperIterable<>(results);
+    public <F> SuperIterable<F> flatMapChunked(Function<E, ? extends Iterable<F>> op) {
+        return flatMapChunked(op, ChunkSink.DEFAULT_CHUNK);
+    }
+
+    /**
+     * Як flatMapChunked, але внутрішній List з довільним доступом копіюється
+     * в пакет за індексами, без створення ітератора.
+     */
+    public <F> SuperIterable<F> flatMapToArray(Function<E, ? extends List<F>> op) {
+        return with(self.then((Sink<? super F> down) -> new ChunkSink<E, F>(down, ChunkSink.DEFAULT_CHUNK) {
+            @Override
+            public void accept(E e) {
+                List<F> inner = op.apply(e);
+                if (inner instanceof RandomAccess) {
+                    for (int i = 0, n = inner.size(); i < n; i++) {
+                        if (!emit(inner.get(i))) {
+                            return;
+                        }
+                    }
+                } else {
+                    for (F f : inner) {
+                        if (!emit(f)) {
+                            return;
+                        }
+                    }
+                }
+            }
+        }, FLAT_MAP_CLEARS));
     }
 
     public <F> SuperIterable<F> map(Function<E, F> op) {
-        List<F> results = new ArrayList<>();
-        self.forEach(e -> results.add(op.apply(e)));
-        return new SuperIterable<>(results);
+        return with(self.then(
+                (Sink<? super F> down) -> Sink.chain(down, (E e) -> down.accept(op.apply(e))),
+                Spliterator.DISTINCT | Spliterator.SORTED | Spliterator.NONNULL));
     }
 
     public SuperIterable<E> filter(Predicate<E> pred) {
-        List<E> results = new ArrayList<>();
-        self.forEach((E e) -> {
+        return with(self.then((Sink<? super E> down) -> Sink.chain(down, (E e) -> {
             if (pred.test(e)) {
-                results.add(e);
+                down.accept(e);
+            }
+        }), Spliterator.SIZED | Spliterator.SUBSIZED));
+    }
+
+    /**
+     * Не більше maxSize перших елементів; після останнього джерело більше не
+     * читається.
+     */
+    public SuperIterable<E> limit(long maxSize) {
+        if (maxSize < 0) {
+            throw new IllegalArgumentException(Long.toString(maxSize));
+        }
+        return with(self.thenStateful((Sink<? super E> down) -> new Sink<E>() {
+            private long seen;
+
+            @Override
+            public void accept(E e) {
+                if (seen < maxSize) {
+                    seen++;
+                    down.accept(e);
+                }
+            }
+
+            @Override
+            public boolean cancellationRequested() {
+                return seen >= maxSize || down.cancellationRequested();
+            }
+
+            @Override
+            public void end() {
+                down.end();
+            }
+        }, Spliterator.SIZED | Spliterator.SUBSIZED));
+    }
+
+    /**
+     * Елементи до першого, що не проходить pred; на ньому читання зупиняється.
+     */
+    public SuperIterable<E> takeWhile(Predicate<E> pred) {
+        return with(self.thenStateful((Sink<? super E> down) -> new Sink<E>() {
+            private boolean done;
+
+            @Override
+            public void accept(E e) {
+                if (!done && pred.test(e)) {
+                    down.accept(e);
+                } else {
+                    done = true;
+                }
+            }
+
+            @Override
+            public boolean cancellationRequested() {
+                return done || down.cancellationRequested();
+            }
+
+            @Override
+            public void end() {
+                down.end();
+            }
+        }, Spliterator.SIZED | Spliterator.SUBSIZED));
+    }
+
+    public Optional<E> findFirst() {
+        List<E> first = new ArrayList<>(1);
+        self.forEach(new Sink<E>() {
+            @Override
+            public void accept(E e) {
+                first.add(e);
+            }
+
+            @Override
+            public boolean cancellationRequested() {
+                return !first.isEmpty();
+            }
+        });
+        return first.isEmpty() ? Optional.empty() : Optional.of(first.get(0));
+    }
+
+    public boolean anyMatch(Predicate<E> pred) {
+        boolean[] found = {false};
+        self.forEach(new Sink<E>() {
+            @Override
+            public void accept(E e) {
+                found[0] = pred.test(e);
+            }
+
+            @Override
+            public boolean cancellationRequested() {
+                return found[0];
             }
         });
-        return new SuperIterable<>(results);
+        return found[0];
+    }
+
+    public boolean allMatch(Predicate<E> pred) {
+        return !anyMatch(pred.negate());
+    }
+
+    public boolean noneMatch(Predicate<E> pred) {
+        return !anyMatch(pred);
+    }
+
+    public IntSuperIterable mapToInt(ToIntFunction<E> op) {
+        return new IntSuperIterable(action -> self.forEach(e -> action.accept(op.applyAsInt(e))));
+    }
+
+    public LongSuperIterable mapToLong(ToLongFunction<E> op) {
+        return new LongSuperIterable(action -> self.forEach(e -> action.accept(op.applyAsLong(e))));
+    }
+
+    public DoubleSuperIterable mapToDouble(ToDoubleFunction<E> op) {
+        return new DoubleSuperIterable(action -> self.forEach(e -> action.accept(op.applyAsDouble(e))));
     }
 
     public static void main(String[] args) {
@@ -107,5 +363,69 @@ public class SuperIterable<E> implements Iterable<E> {
                 .flatMap(c -> new SuperIterable<>(c.getPassengers())
                                     .map(p -> p + " is riding in a " + c.getColor() + " car"))
                 .forEach(c -> System.out.println("> " + c));
+
+        System.out.println("---------------------------------");
+
+        // рівень пального без упаковки в Integer
+        IntSuperIterable gasLevels = carIter.mapToInt(c -> c.getGasLevel());
+        IntSummaryStatistics gas = gasLevels.summaryStatistics();
+        System.out.println("total gas: " + gas.getSum()
+                + ", min: " + gas.getMin()
+                + ", max: " + gas.getMax()
+                + ", average: " + gas.getAverage());
+        System.out.println("gas histogram 0..9: " + Arrays.toString(gasLevels.histogram(0, 9)));
+        System.out.println("---------------------------------");
+
+        List<Car> manyCars = new ArrayList<>();
+        for (int i = 0; i < 1_000_000; i++) {
+            manyCars.add(Car.withGasColorPassengers(i % 10, i % 2 == 0 ? "Red" : "Black", "Driver" + i));
+        }
+        // джерело - ArrayList, тому його можна ділити на шматки
+        List<String> drivers = new SuperIterable<>(manyCars)
+                .parallel()
+                .filter(c -> c.getGasLevel() > 6)
+                .map(c -> c.getPassengers().get(0))
+                .toList();
+        System.out.println(drivers.size() + " drivers with lots of fuel, first: " + drivers.get(0));
+        System.out.println("---------------------------------");
+
+        // spliterator ділить ArrayList рівно навпіл, map зберігає SIZED
+        long redCars = new SuperIterable<>(manyCars)
+                .map(c -> c.getColor())
+                .parallelStream()
+                .filter(c -> c.equals("Red"))
+                .count();
+        System.out.println(redCars + " red cars");
+        System.out.println("---------------------------------");
+
+        // джерело читається лише до першої машини, що підходить
+        int[] inspected = {0};
+        Optional<Car> firstFull = new SuperIterable<>(manyCars)
+                .map(c -> {
+                    inspected[0]++;
+                    return c;
+                })
+                .filter(c -> c.getGasLevel() > 6)
+                .findFirst();
+        System.out.println(firstFull.get() + " found after " + inspected[0] + " cars");
+        System.out.println("any black car without fuel: "
+                + new SuperIterable<>(manyCars).anyMatch(c -> c.getColor().equals("Black") && c.getGasLevel() == 0));
+        carIter
+                .flatMap(c -> new SuperIterable<>(c.getPassengers()))
+                .takeWhile(p -> !p.equals("Weatherwax"))
+                .limit(4)
+                .forEach(p -> System.out.println("> " + p));
+        System.out.println("---------------------------------");
+
+        // пасажири всіх машин через один пакет, без SuperIterable на кожну машину
+        long passengers = new SuperIterable<>(manyCars)
+                .flatMapToArray(c -> c.getPassengers())
+                .mapToInt(p -> p.length())
+                .count();
+        System.out.println(passengers + " passengers");
+        carIter
+                .flatMapChunked(c -> c.getPassengers(), 4)
+                .map(s -> s.toLowerCase())
+                .forEach(c -> System.out.println("> " + c));
     }
 }
\ No newline at end of file